@@ -17,6 +17,14 @@ public class BEDgraphEntry
 		parseEntryLine( entryLine );
 	}
 	
+	/**
+	 * Generate an empty BEDgraphEntry to be filled by a BedgraphLineReader. 
+	 */
+	public BEDgraphEntry()
+	{
+		this.chrom = ""; 
+	}
+	
 	/**
 	 * Generate BEDgraphEntry from individual position information. 
 	 * @param entryLine
@@ -42,6 +50,21 @@ public class BEDgraphEntry
 		this.score = Float.parseFloat( entries[ 3 ].trim() ); 
 	}
 	
+	/**
+	 * Reuse this entry for another position. The chromosome name is expected to be trimmed already.
+	 * @param chrom
+	 * @param chromStart
+	 * @param chromEnd
+	 * @param score
+	 */
+	public void set( final String chrom, final int chromStart, final int chromEnd, final float score )
+	{
+		this.chrom = chrom; 
+		this.chromStart = chromStart; 
+		this.chromEnd = chromEnd; 
+		this.score = score; 
+	}
+	
 	/**
 	 * Extract all positions contained in this BEDgraphentry as a List of BEDgraphentries. 
 	 * @return
@@ -0,0 +1,50 @@
+package bedgraphTools;
+
+import java.io.IOException;
+
+/**
+ * Block of bedgraph entries held in primitive arrays, passed between the stages of a BedgraphPipeline
+ * instead of single entries or text lines.
+ */
+public class BedgraphBlock
+{
+	public static final int SIZE = 1 << 14;
+
+	protected final String[] chroms = new String[ SIZE ];
+	protected final int[] starts = new int[ SIZE ];
+	protected final int[] ends = new int[ SIZE ];
+	protected final float[] scores = new float[ SIZE ];
+	protected int size = 0;
+
+	//Set on the block closing the stream
+	protected boolean last = false;
+
+	public boolean add( final String chrom, final int start, final int end, final float score )
+	{
+		chroms[ size ] = chrom;
+		starts[ size ] = start;
+		ends[ size ] = end;
+		scores[ size ] = score;
+		return ++size == SIZE;
+	}
+
+	/**
+	 * Pass all entries to the sink.
+	 * @param sink
+	 * @throws IOException
+	 */
+	public void writeTo( final BedgraphSink sink ) throws IOException
+	{
+		for( int i = 0; i < size; i++ )
+			sink.write( chroms[ i ], starts[ i ], ends[ i ], scores[ i ] );
+	}
+
+	public void clear()
+	{
+		size = 0;
+		last = false;
+	}
+
+	public int size() { return size; }
+	public boolean isLast() { return last; }
+}
@@ -0,0 +1,410 @@
+package bedgraphTools;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Byte level bedgraph parser. Chromosome, start, end and score of each line are parsed directly from a reused byte buffer
+ * into a reusable BEDgraphEntry, without creating line Strings, field arrays or boxed numbers.
+ * Chromosome names are interned: all entries of a chromosome share the same String instance.
+ * Fields are tab separated and trimmed as in BEDgraphEntry.parseEntryLine, further fields are ignored.
+ * Scores are parsed to exactly the float Float.parseFloat would return, getDoubleScore() parses them as Double.parseDouble.
+ */
+public class BedgraphLineReader
+{
+	protected static final int BUFFER_SIZE = 1 << 16;
+
+	protected static final double[] POWERS_OF_TEN = new double[ 23 ];
+	static
+	{
+		POWERS_OF_TEN[ 0 ] = 1;
+		for( int i = 1; i < POWERS_OF_TEN.length; i++ )
+			POWERS_OF_TEN[ i ] = POWERS_OF_TEN[ i - 1 ] * 10;
+	}
+
+	protected final InputStream in;
+	protected byte[] buffer = new byte[ BUFFER_SIZE ];
+	protected int position = 0, limit = 0;
+	protected boolean endOfStream = false;
+
+	//Current line is buffer[ lineStart, lineEnd ), its score field buffer[ scoreStart, scoreEnd )
+	protected int lineStart = 0, lineEnd = 0;
+	protected int scoreStart = 0, scoreEnd = 0;
+
+	//Skip lines starting with "track"
+	protected boolean skipTrackLines = false;
+
+	protected final HashMap<String, String> chromosomes = new HashMap<String, String>();
+	protected byte[] lastChrom = new byte[ 0 ];
+	protected int lastChromLength = -1;
+	protected String lastChromString = null;
+
+	public BedgraphLineReader( final String file ) throws IOException
+	{
+		this( new FileInputStream( file ) );
+	}
+
+	public BedgraphLineReader( final InputStream in )
+	{
+		this.in = in;
+	}
+
+	/**
+	 * Skip track definition lines ( track name=... ) instead of failing to parse them.
+	 * @param skipTrackLines
+	 */
+	public void setSkipTrackLines( final boolean skipTrackLines ) { this.skipTrackLines = skipTrackLines; }
+
+	/**
+	 * Parse the next line into entry.
+	 * @param entry
+	 * @return false if the end of the input is reached
+	 * @throws IOException if the line is not a valid bedgraph entry
+	 */
+	public boolean next( final BEDgraphEntry entry ) throws IOException
+	{
+		if( !nextLine() )
+			return false;
+
+		int p = lineStart;
+		final int chromEnd = fieldEnd( p );
+		final String chrom = chromosome( p, chromEnd );
+
+		p = chromEnd + 1;
+		int end = fieldEnd( p );
+		final int start = parseInt( p, end );
+
+		p = end + 1;
+		end = fieldEnd( p );
+		final int stop = parseInt( p, end );
+
+		p = end + 1;
+		end = fieldEnd( p );
+		scoreStart = p;
+		scoreEnd = end;
+		final float score = parseFloat( p, end );
+
+		entry.set( chrom, start, stop, score );
+		return true;
+	}
+
+	/**
+	 * @return the score of the current line in double precision, exactly as Double.parseDouble
+	 */
+	public double getDoubleScore()
+	{
+		final double value = parseDecimal( scoreStart, scoreEnd );
+		return Double.isNaN( value ) ? Double.parseDouble( new String( buffer, scoreStart, scoreEnd - scoreStart ) ) : value;
+	}
+
+	/**
+	 * @return the current line, e.g. for error messages
+	 */
+	public String getLine()
+	{
+		return new String( buffer, lineStart, lineEnd - lineStart );
+	}
+
+	/**
+	 * Move to the next line, so that it is completely contained in the buffer. Empty lines are skipped.
+	 * @return
+	 * @throws IOException
+	 */
+	protected boolean nextLine() throws IOException
+	{
+		while( true )
+		{
+			int newline = indexOfNewline( position );
+			while( newline == -1 && !endOfStream )
+			{
+				final int searched = limit - position;
+				fill();
+				newline = indexOfNewline( position + searched );
+			}
+
+			if( newline == -1 )
+			{
+				//Last line without newline
+				if( position == limit )
+					return false;
+				newline = limit;
+			}
+
+			lineStart = position;
+			lineEnd = newline;
+			position = Math.min( newline + 1, limit );
+			if( lineEnd > lineStart && buffer[ lineEnd - 1 ] == '\r' )
+				lineEnd--;
+
+			if( lineEnd > lineStart && !( skipTrackLines && isTrackLine() ) )
+				return true;
+		}
+	}
+
+	protected boolean isTrackLine()
+	{
+		if( lineEnd - lineStart < 5 )
+			return false;
+		return buffer[ lineStart ] == 't' && buffer[ lineStart + 1 ] == 'r' && buffer[ lineStart + 2 ] == 'a' && buffer[ lineStart + 3 ] == 'c' && buffer[ lineStart + 4 ] == 'k';
+	}
+
+	protected int indexOfNewline( final int from )
+	{
+		for( int i = from; i < limit; i++ )
+			if( buffer[ i ] == '\n' )
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Move the unread bytes to the front of the buffer (growing it for very long lines) and read more input.
+	 * @throws IOException
+	 */
+	protected void fill() throws IOException
+	{
+		final int remaining = limit - position;
+		if( position > 0 )
+		{
+			System.arraycopy( buffer, position, buffer, 0, remaining );
+			position = 0;
+			limit = remaining;
+		}
+		else if( limit == buffer.length )
+		{
+			buffer = Arrays.copyOf( buffer, buffer.length * 2 );
+		}
+
+		final int read = in.read( buffer, limit, buffer.length - limit );
+		if( read == -1 )
+			endOfStream = true;
+		else
+			limit += read;
+	}
+
+	protected int fieldEnd( final int from ) throws IOException
+	{
+		if( from > lineEnd )
+			throw new IOException( "Missing bedgraph field in line: " + getLine() );
+
+		for( int i = from; i < lineEnd; i++ )
+			if( buffer[ i ] == '\t' )
+				return i;
+		return lineEnd;
+	}
+
+	protected static boolean isWhitespace( final byte b )
+	{
+		return ( b & 0xff ) <= ' ';
+	}
+
+	/**
+	 * Return the interned chromosome name of buffer[ from, to ). Consecutive lines of the same chromosome do not allocate.
+	 */
+	protected String chromosome( int from, int to )
+	{
+		while( from < to && isWhitespace( buffer[ from ] ) )
+			from++;
+		while( to > from && isWhitespace( buffer[ to - 1 ] ) )
+			to--;
+
+		final int length = to - from;
+		if( length == lastChromLength )
+		{
+			boolean same = true;
+			for( int i = 0; i < length && same; i++ )
+				same = lastChrom[ i ] == buffer[ from + i ];
+			if( same )
+				return lastChromString;
+		}
+
+		final String name = new String( buffer, from, length );
+		String chrom = chromosomes.get( name );
+		if( chrom == null )
+		{
+			chrom = name;
+			chromosomes.put( chrom, chrom );
+		}
+
+		if( lastChrom.length < length )
+			lastChrom = new byte[ length ];
+		System.arraycopy( buffer, from, lastChrom, 0, length );
+		lastChromLength = length;
+		lastChromString = chrom;
+
+		return chrom;
+	}
+
+	protected int parseInt( int from, int to )
+	{
+		while( from < to && isWhitespace( buffer[ from ] ) )
+			from++;
+		while( to > from && isWhitespace( buffer[ to - 1 ] ) )
+			to--;
+
+		int i = from;
+		boolean negative = false;
+		if( i < to && ( buffer[ i ] == '-' || buffer[ i ] == '+' ) )
+		{
+			negative = buffer[ i ] == '-';
+			i++;
+		}
+
+		//Up to 9 digits can not overflow, everything else is left to Integer.parseInt
+		if( i == to || to - i > 9 )
+			return Integer.parseInt( new String( buffer, from, to - from ) );
+
+		int value = 0;
+		for( ; i < to; i++ )
+		{
+			final int digit = buffer[ i ] - '0';
+			if( digit < 0 || digit > 9 )
+				return Integer.parseInt( new String( buffer, from, to - from ) );
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parse a decimal number with up to 18 significant digits exactly as Float.parseFloat.
+	 * The decimal value is rounded to the nearest double (exact for these inputs) and then to float. This double rounding
+	 * can only differ from a direct rounding if the double lies exactly between two floats, these rare values as well as
+	 * all other formats (NaN, Infinity, hexadecimal, more digits) are parsed by Float.parseFloat.
+	 */
+	protected float parseFloat( final int from, final int to )
+	{
+		final double value = parseDecimal( from, to );
+		if( Double.isNaN( value ) )
+			return fallbackParseFloat( from, to );
+
+		final float result = (float) value;
+		if( (double) result != value )
+		{
+			//Double exactly halfway between two floats: round the decimal value directly
+			final double other = Math.nextAfter( result, value );
+			if( Float.isInfinite( result ) || value - result == other - value )
+				return fallbackParseFloat( from, to );
+		}
+
+		return result;
+	}
+
+	/**
+	 * Parse a decimal number with up to 18 significant digits and a decimal exponent within [-22, 22] to the correctly rounded double,
+	 * exactly as Double.parseDouble. All other formats return NaN and are left to the caller.
+	 */
+	protected double parseDecimal( int from, int to )
+	{
+		while( from < to && isWhitespace( buffer[ from ] ) )
+			from++;
+		while( to > from && isWhitespace( buffer[ to - 1 ] ) )
+			to--;
+
+		int i = from;
+		boolean negative = false;
+		if( i < to && ( buffer[ i ] == '-' || buffer[ i ] == '+' ) )
+		{
+			negative = buffer[ i ] == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigit = false;
+		boolean point = false;
+		for( ; i < to; i++ )
+		{
+			final byte b = buffer[ i ];
+			if( b >= '0' && b <= '9' )
+			{
+				anyDigit = true;
+				if( mantissa == 0 && b == '0' )
+				{
+					if( point )
+						exponent--;
+					continue;
+				}
+				if( ++digits > 18 )
+					return Double.NaN;
+				mantissa = mantissa * 10 + ( b - '0' );
+				if( point )
+					exponent--;
+			}
+			else if( b == '.' && !point )
+			{
+				point = true;
+			}
+			else if( ( b == 'e' || b == 'E' ) && anyDigit )
+			{
+				i++;
+				boolean negativeExponent = false;
+				if( i < to && ( buffer[ i ] == '-' || buffer[ i ] == '+' ) )
+				{
+					negativeExponent = buffer[ i ] == '-';
+					i++;
+				}
+				if( i == to || to - i > 4 )
+					return Double.NaN;
+
+				int e = 0;
+				for( ; i < to; i++ )
+				{
+					final int digit = buffer[ i ] - '0';
+					if( digit < 0 || digit > 9 )
+						return Double.NaN;
+					e = e * 10 + digit;
+				}
+				exponent += negativeExponent ? -e : e;
+				break;
+			}
+			else
+			{
+				return Double.NaN;
+			}
+		}
+
+		if( !anyDigit )
+			return Double.NaN;
+
+		if( mantissa == 0 )
+			return negative ? -0.0 : 0.0;
+
+		//m * 10^e is only a correctly rounded double if m and 10^|e| are exact doubles
+		if( mantissa >= ( 1L << 53 ) || exponent < -22 || exponent > 22 )
+			return Double.NaN;
+
+		double value = mantissa;
+		if( exponent < 0 )
+			value /= POWERS_OF_TEN[ -exponent ];
+		else
+			value *= POWERS_OF_TEN[ exponent ];
+
+		return negative ? -value : value;
+	}
+
+	protected float fallbackParseFloat( final int from, final int to )
+	{
+		return Float.parseFloat( new String( buffer, from, to - from ) );
+	}
+
+	/**
+	 * Pass all remaining entries to the sink and close it.
+	 * @param sink
+	 * @throws IOException
+	 */
+	public void writeTo( final BedgraphSink sink ) throws IOException
+	{
+		final BEDgraphEntry entry = new BEDgraphEntry();
+		while( next( entry ) )
+			sink.write( entry.getChrom(), entry.getChromStart(), entry.getChromEnd(), entry.getScore() );
+		sink.close();
+	}
+
+	public void close() throws IOException
+	{
+		in.close();
+	}
+}
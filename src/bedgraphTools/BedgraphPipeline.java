@@ -0,0 +1,186 @@
+package bedgraphTools;
+
+import java.util.ArrayList;
+
+/**
+ * Runs a chain of bedgraph operators (decompress, blur, derive, compress) in one process. The input is parsed once,
+ * every operator runs as a streaming stage in its own thread and the stages hand over primitive BedgraphBlocks.
+ * Only the result of the last operator is formatted as text.
+ */
+public class BedgraphPipeline
+{
+	protected final ArrayList<Thread> stages = new ArrayList<Thread>();
+
+	/**
+	 * @param chain comma separated operators, options separated by colons, e.g. decompress,blur:sigma=20,derive,compress
+	 * @param bedgraph
+	 */
+	public BedgraphPipeline( final String chain, final String bedgraph )
+	{
+		final String[] operators = chain.split( "," );
+
+		//Build the chain from the printer backwards, every operator writes to the queue of the next stage
+		BedgraphSink sink = new BedgraphPrinter();
+		for( int i = operators.length - 1; i >= 0; i-- )
+			sink = createOperator( operators[ i ], startStage( sink ) );
+		final BedgraphSink input = startStage( sink );
+
+		BedgraphLineReader in = null;
+		try
+		{
+			in = new BedgraphLineReader( bedgraph );
+			in.writeTo( input );
+			in.close();
+
+			for( final Thread stage : stages )
+				stage.join();
+		}
+		catch (Exception e)
+		{
+			System.err.println( "Cannot process the bedgraph entry: ." + ( in == null ? e : in.getLine() ) );
+			System.exit( 1 );
+		}
+		System.exit( 0 );
+	}
+
+	/**
+	 * Start a thread passing all entries written to the returned queue on to the sink.
+	 * @param sink
+	 * @return
+	 */
+	protected BedgraphSink startStage( final BedgraphSink sink )
+	{
+		final BlockQueue queue = new BlockQueue();
+		final Thread stage = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					queue.drainTo( sink );
+				}
+				catch (Exception e)
+				{
+					System.err.println( "Pipeline stage failed: " + e );
+					System.exit( 1 );
+				}
+			}
+		};
+		stage.start();
+		stages.add( stage );
+		return queue;
+	}
+
+	/**
+	 * Create the filter for one operator of the chain spec, writing to out.
+	 * @param operator name followed by options, e.g. blur:sigma=20:filter=box
+	 * @param out
+	 * @return
+	 */
+	public static BedgraphSink createOperator( final String operator, final BedgraphSink out )
+	{
+		final String[] fields = operator.trim().split( ":" );
+		final String name = fields[ 0 ];
+
+		float sigma = -1;
+		String filter = "gaussian";
+		int derivative = 0;
+		float epsilon = 0;
+		for( int i = 1; i < fields.length; i++ )
+		{
+			final String value = fields[ i ].substring( fields[ i ].indexOf("=") + 1 );
+			if( name.equals( "blur" ) && fields[ i ].startsWith( "sigma=" ) )
+			{
+				try
+				{
+					sigma = Float.parseFloat( value );
+				}
+				catch (Exception e)
+				{
+					System.err.println( "Please provide a float value to size the kernel: " + operator );
+					System.exit( 1 );
+				}
+			}
+			else if( name.equals( "blur" ) && fields[ i ].startsWith( "filter=" ) && ( value.equals("gaussian") || value.equals("direct") || value.equals("fft") || value.equals("box") ) )
+			{
+				filter = value;
+			}
+			else if( name.equals( "blur" ) && fields[ i ].startsWith( "derivative=" ) && ( value.equals("0") || value.equals("1") || value.equals("2") ) )
+			{
+				derivative = Integer.parseInt( value );
+			}
+			else if( name.equals( "compress" ) && fields[ i ].startsWith( "epsilon=" ) )
+			{
+				try
+				{
+					epsilon = Float.parseFloat( value );
+				}
+				catch (Exception e)
+				{
+					System.err.println( "Please provide a float value as epsilon: " + operator );
+					System.exit( 1 );
+				}
+			}
+			else
+			{
+				System.err.println( "Unknown option " + fields[ i ] + " of operator " + name );
+				System.exit( 1 );
+			}
+		}
+
+		if( name.equals( "decompress" ) )
+			return new ExpandFilter( out );
+		else if( name.equals( "compress" ) )
+			return new CompressFilter( out, epsilon );
+		else if( name.equals( "derive" ) )
+			return new DeriveFilter( out );
+		else if( name.equals( "blur" ) )
+		{
+			if( sigma < 0 )
+			{
+				System.err.println( "Please specify the sigma of the blur operator, e.g. blur:sigma=20" );
+				System.exit( 1 );
+			}
+			if( derivative != 0 && filter.equals( "box" ) )
+			{
+				System.err.println( "Derivatives can not be approximated by box filters: " + operator );
+				System.exit( 1 );
+			}
+			return BlurBedgraph.createFilter( sigma, filter, derivative, out );
+		}
+
+		System.err.println( "Unknown operator " + name + ". Please use decompress, blur, derive or compress" );
+		System.exit( 1 );
+		return null;
+	}
+
+	/**
+	 * Main method used for running this script from shell
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		if( args.length != 2 || !args[ 0 ].startsWith( "-chain=" ) )
+		{
+			final String info = "\n#######################\n" +
+					"java -cp geneArchitectureToolbox.jar bedgraphTools.BedgraphPipeline -chain=[operator,operator,...] input.bedgraph\n" +
+					"#######################\n" +
+					"Runs the operators one after the other on the input bedgraph within one process and prints the result to STDOUT.\n" +
+					"The input is parsed and the output formatted only once, every operator streams its result to the next one.\n" +
+					"Operators (options separated by colons):\n" +
+					"decompress: one entry per position, empty positions are filled as by decompressBedgraph\n" +
+					"blur:sigma=[float]:filter=[gaussian,direct,fft,box]:derivative=[0,1,2]: gaussian blur as by blurBedgraph (filter and derivative optional)\n" +
+					"derive: first derivative as by deriveBedgraph\n" +
+					"compress:epsilon=[float]: run length encoding as by compressBedgraph (epsilon optional)\n" +
+					"Example: -chain=decompress,blur:sigma=20,derive,compress\n" +
+					"Fused: -chain=decompress,blur:sigma=20:derivative=1,compress computes the smoothed slope in one convolution\n" +
+					"\n";
+			System.err.println( info );
+		}
+		else
+		{
+			new BedgraphPipeline( args[ 0 ].substring( args[ 0 ].indexOf("=") + 1 ), args[ 1 ] );
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package bedgraphTools;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import outputTools.OutputWriter;
+
+/**
+ * Writes bedgraph entries through an OutputWriter instead of one System.out.println per line.
+ * Lines are formatted as BEDgraphEntry.toString().
+ */
+public class BedgraphPrinter implements BedgraphSink
+{
+	protected final OutputWriter out;
+
+	/**
+	 * Print to STDOUT
+	 */
+	public BedgraphPrinter()
+	{
+		this( new OutputWriter() );
+	}
+
+	public BedgraphPrinter( final OutputStream out )
+	{
+		this( new OutputWriter( out ) );
+	}
+
+	public BedgraphPrinter( final OutputWriter out )
+	{
+		this.out = out;
+	}
+
+	@Override
+	public void write( final String chrom, final int start, final int end, final float score ) throws IOException
+	{
+		out.print( chrom ).tab().print( start ).tab().print( end ).tab().print( score ).println();
+	}
+
+	public void write( final BEDgraphEntry entry ) throws IOException
+	{
+		write( entry.getChrom(), entry.getChromStart(), entry.getChromEnd(), entry.getScore() );
+	}
+
+	/**
+	 * Flush the buffer. Streams other than STDOUT are closed.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		out.close();
+	}
+}
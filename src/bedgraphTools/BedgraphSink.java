@@ -0,0 +1,18 @@
+package bedgraphTools;
+
+import java.io.IOException;
+
+/**
+ * Receives bedgraph entries one by one, e.g. to filter them (BlurFilter) or to print them (BedgraphPrinter).
+ * Sinks can be chained, each filter writes its result to the next sink.
+ */
+public interface BedgraphSink
+{
+	public void write( final String chrom, final int start, final int end, final float score ) throws IOException;
+
+	/**
+	 * Flush all pending entries (e.g. the end of the last chromosome) and close the following sinks.
+	 * @throws IOException
+	 */
+	public void close() throws IOException;
+}
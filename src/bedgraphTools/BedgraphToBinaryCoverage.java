@@ -0,0 +1,100 @@
+package bedgraphTools;
+
+import inputOutput.TextFileAccess;
+
+import java.io.BufferedReader;
+import java.io.File;
+
+public class BedgraphToBinaryCoverage
+{
+	/**
+	 * Convert a coordinate sorted bedgraph/pileup/coverage file into the binary coverage format.
+	 * @param inputFormat
+	 * @param input
+	 * @param output
+	 */
+	public BedgraphToBinaryCoverage( final String inputFormat, final String input, final File output )
+	{
+		convert( inputFormat, input, output );
+		System.exit( 0 );
+	}
+
+	public void convert( final String inputFormat, final String input, final File output )
+	{
+		//Define which position of the entry string holds the coverage value. Coverage files only hold a single position per line.
+		int yValuePos = 3;
+		boolean hasEnd = true;
+		if( inputFormat.equals("coverage") )
+		{
+			yValuePos = 2;
+			hasEnd = false;
+		}
+
+		BufferedReader in = TextFileAccess.openFileRead( input );
+		String line = "No line parsed";
+		try
+		{
+			BinaryCoverageWriter out = new BinaryCoverageWriter( output );
+			String chrId = "";
+			String[] entries;
+			int start;
+			while( in.ready() )
+			{
+				line = in.readLine();
+				if( line.startsWith( "track" ) )
+					continue;
+
+				entries = line.split("\t");
+				if( !entries[ 0 ].equals( chrId ) )
+				{
+					chrId = entries[ 0 ];
+					out.startChromosome( chrId );
+				}
+
+				start = Integer.parseInt( entries[ 1 ] );
+				if( hasEnd )
+					out.putRun( start, Integer.parseInt( entries[ 2 ] ), Float.parseFloat( entries[ yValuePos ] ) );
+				else
+					out.put( start, Float.parseFloat( entries[ yValuePos ] ) );
+			}
+			out.close();
+			in.close();
+		}
+		catch (Exception e)
+		{
+			System.err.println( "Unable to convert the entry: " + line + " " + e );
+			System.exit( 1 );
+		}
+	}
+
+	/**
+	 * Main method used for running this script from shell
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		if( args.length != 3 )
+		{
+			final String info = "\n#######################\n" +
+					"java -jar bedgraphToBinaryCoverage -input=[bedgraph,pileup,coverage] input.bedgraph/pileup output.bcov\n" +
+					"#######################\n" +
+					"Converts a bedgraph/pileup/coverage file once into an indexed binary coverage file (one float array per chromosome).\n" +
+					"The binary file is memory mapped by the windowing tools ( -input=binary ) and does not need to be parsed again.\n" +
+					"Build its zoom levels with bedgraphTools.CoveragePyramid output.bcov to read long windows scaled to few bins ( -bins=x ) faster.\n" +
+					"The input has to be sorted by chromosome and position (e.g. sort -k1,1 -k2,2n).\n" +
+					"\n";
+			System.err.println( info );
+		}
+		else
+		{
+			final String input = args[ 0 ].substring( args[ 0 ].indexOf("=") + 1);
+			if( !input.equals("bedgraph") && !input.equals("pileup") && !input.equals("coverage") )
+			{
+				System.err.println( "Please specify an input format: bedgraph, pileup or coverage" );
+				System.exit( 1 );
+			}
+
+			new BedgraphToBinaryCoverage( input, args[ 1 ], new File( args[ 2 ] ) );
+		}
+	}
+}
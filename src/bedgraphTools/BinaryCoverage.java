@@ -0,0 +1,139 @@
+package bedgraphTools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Read-only access to a binary coverage file written by BinaryCoverageWriter.
+ * The chromosome arrays are memory mapped, so opening a file only parses the chromosome index.
+ */
+public class BinaryCoverage
+{
+	//Each chromosome is mapped in chunks of 2^28 floats (1 GB), as a single mapping is limited to 2 GB.
+	protected static final int CHUNK_BITS = 28;
+	protected static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	protected static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	protected final RandomAccessFile file;
+	protected final FileChannel channel;
+
+	protected final ArrayList<String> chromosomes = new ArrayList<String>();
+	protected final HashMap<String, Integer> chrIndex = new HashMap<String, Integer>();
+	protected final ArrayList<FloatBuffer[]> chrChunks = new ArrayList<FloatBuffer[]>();
+	protected final ArrayList<Integer> chrLengths = new ArrayList<Integer>();
+
+	public BinaryCoverage( final File input ) throws IOException
+	{
+		this.file = new RandomAccessFile( input, "r" );
+		this.channel = file.getChannel();
+
+		final ByteBuffer header = ByteBuffer.allocate( BinaryCoverageWriter.HEADER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+		channel.read( header, 0 );
+		header.flip();
+		if( header.remaining() < BinaryCoverageWriter.HEADER_SIZE || header.getInt() != BinaryCoverageWriter.MAGIC )
+			throw new IOException( input + " is not a binary coverage file." );
+		if( header.getInt() != BinaryCoverageWriter.VERSION )
+			throw new IOException( input + " has an unsupported binary coverage version." );
+		final long indexOffset = header.getLong();
+
+		final ByteBuffer index = channel.map( FileChannel.MapMode.READ_ONLY, indexOffset, channel.size() - indexOffset ).order( ByteOrder.LITTLE_ENDIAN );
+		final int nrOfChromosomes = index.getInt();
+		for( int i = 0; i < nrOfChromosomes; i++ )
+		{
+			final byte[] name = new byte[ index.getInt() ];
+			index.get( name );
+			final long offset = index.getLong();
+			final int length = index.getInt();
+
+			final String chr = new String( name, "UTF-8" );
+			chrIndex.put( chr, chromosomes.size() );
+			chromosomes.add( chr );
+			chrLengths.add( length );
+			chrChunks.add( mapChromosome( offset, length ) );
+		}
+	}
+
+	protected FloatBuffer[] mapChromosome( final long offset, final int length ) throws IOException
+	{
+		final FloatBuffer[] chunks = new FloatBuffer[ ( length + CHUNK_SIZE - 1 ) >>> CHUNK_BITS ];
+		for( int c = 0; c < chunks.length; c++ )
+		{
+			final long chunkStart = (long) c * CHUNK_SIZE;
+			final long chunkLength = Math.min( CHUNK_SIZE, length - chunkStart );
+			chunks[ c ] = channel.map( FileChannel.MapMode.READ_ONLY, offset + chunkStart * 4, chunkLength * 4 ).order( ByteOrder.LITTLE_ENDIAN ).asFloatBuffer();
+		}
+		return chunks;
+	}
+
+	public boolean contains( final String chr ) { return chrIndex.containsKey( chr ); }
+
+	public ArrayList<String> getChromosomes() { return chromosomes; }
+
+	/**
+	 * Return the number of positions stored for chr, 0 if the chromosome is not contained.
+	 * @param chr
+	 * @return
+	 */
+	public int getLength( final String chr )
+	{
+		final Integer i = chrIndex.get( chr );
+		return i == null ? 0 : chrLengths.get( i );
+	}
+
+	/**
+	 * Return the value at position of chr, 0 for positions or chromosomes not contained in the file.
+	 * @param chr
+	 * @param position
+	 * @return
+	 */
+	public float get( final String chr, final int position )
+	{
+		final Integer i = chrIndex.get( chr );
+		if( i == null || position < 0 || position >= chrLengths.get( i ) )
+			return 0f;
+
+		return chrChunks.get( i )[ position >>> CHUNK_BITS ].get( position & CHUNK_MASK );
+	}
+
+	/**
+	 * Copy the values of the window [start, end) of chr into window. Values are reversed for windows on the minus strand.
+	 * @param chr
+	 * @param start
+	 * @param end
+	 * @param plusStrand
+	 * @param window array of at least end - start entries
+	 */
+	public void fillWindow( final String chr, final int start, final int end, final boolean plusStrand, final float[] window )
+	{
+		final Integer i = chrIndex.get( chr );
+		final FloatBuffer[] chunks = i == null ? null : chrChunks.get( i );
+		final int length = i == null ? 0 : chrLengths.get( i );
+
+		for( int pos = start; pos < end; pos++ )
+		{
+			final float value;
+			if( pos < 0 || pos >= length )
+				value = 0f;
+			else
+				value = chunks[ pos >>> CHUNK_BITS ].get( pos & CHUNK_MASK );
+
+			if( plusStrand )
+				window[ pos - start ] = value;
+			else
+				window[ end - pos - 1 ] = value;
+		}
+	}
+
+	public void close() throws IOException
+	{
+		channel.close();
+		file.close();
+	}
+}
@@ -0,0 +1,189 @@
+package bedgraphTools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Writes coverage values into the binary coverage format read by BinaryCoverage.
+ *
+ * Layout (little endian):
+ * header: magic "BCOV", int version, long offset of the chromosome index
+ * data: one dense float array per chromosome covering positions 0 to the chromosome length
+ * index: int number of chromosomes, followed by name (UTF-8, int length prefixed), long data offset and int length of each chromosome
+ *
+ * Chromosomes are written one after another. Within a chromosome, positions have to be added in ascending order.
+ * Uncovered positions are stored as 0.
+ * As a BedgraphSink, every entry is stored as a run and a new chromosome is started whenever the chromosome changes.
+ */
+public class BinaryCoverageWriter implements BedgraphSink
+{
+	public static final int MAGIC = 0x564F4342; // "BCOV" read as little endian int
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 16;
+
+	protected final RandomAccessFile file;
+	protected final FileChannel channel;
+	protected final ByteBuffer buffer;
+
+	protected final ArrayList<String> chrNames = new ArrayList<String>();
+	protected final ArrayList<Long> chrOffsets = new ArrayList<Long>();
+	protected final ArrayList<Integer> chrLengths = new ArrayList<Integer>();
+	protected final HashSet<String> writtenChromosomes = new HashSet<String>();
+
+	protected String currentChr = null;
+	protected long currentOffset;
+	protected int currentLength;
+
+	public BinaryCoverageWriter( final File output ) throws IOException
+	{
+		if( output.exists() )
+			output.delete();
+
+		this.file = new RandomAccessFile( output, "rw" );
+		this.channel = file.getChannel();
+		this.buffer = ByteBuffer.allocateDirect( 1 << 20 ).order( ByteOrder.LITTLE_ENDIAN );
+
+		//Header, the index offset is written on close
+		buffer.putInt( MAGIC );
+		buffer.putInt( VERSION );
+		buffer.putLong( 0L );
+	}
+
+	/**
+	 * Start a new chromosome. The last chromosome is finished.
+	 * @param chr
+	 * @throws IOException
+	 */
+	public void startChromosome( final String chr ) throws IOException
+	{
+		endChromosome();
+
+		if( !writtenChromosomes.add( chr ) )
+			throw new IOException( "Chromosome " + chr + " is not contiguous in the input. Please sort the input by chromosome and position." );
+
+		this.currentChr = chr;
+		this.currentOffset = channel.position() + buffer.position();
+		this.currentLength = 0;
+	}
+
+	/**
+	 * Set the value of the positions [start, end) of the current chromosome.
+	 * Positions between the last and this run are filled with 0.
+	 * @param start
+	 * @param end
+	 * @param value
+	 * @throws IOException
+	 */
+	public void putRun( final int start, final int end, final float value ) throws IOException
+	{
+		if( start < currentLength )
+			throw new IOException( "Position " + start + " of chromosome " + currentChr + " is not in ascending order. Please sort the input by chromosome and position." );
+
+		while( currentLength < start )
+			putFloat( 0f );
+		while( currentLength < end )
+			putFloat( value );
+	}
+
+	@Override
+	public void write( final String chrom, final int start, final int end, final float score ) throws IOException
+	{
+		if( !chrom.equals( currentChr ) )
+			startChromosome( chrom );
+		putRun( start, end, score );
+	}
+
+	/**
+	 * Set the value of a single position of the current chromosome.
+	 * @param position
+	 * @param value
+	 * @throws IOException
+	 */
+	public void put( final int position, final float value ) throws IOException
+	{
+		putRun( position, position + 1, value );
+	}
+
+	/**
+	 * Add all values of a dense array as the next chromosome.
+	 * @param chr
+	 * @param values
+	 * @param length
+	 * @throws IOException
+	 */
+	public void writeChromosome( final String chr, final float[] values, final int length ) throws IOException
+	{
+		startChromosome( chr );
+		for( int i = 0; i < length; i++ )
+			putFloat( values[ i ] );
+		endChromosome();
+	}
+
+	protected void putFloat( final float value ) throws IOException
+	{
+		if( !buffer.hasRemaining() )
+			flushBuffer();
+
+		buffer.putFloat( value );
+		currentLength++;
+	}
+
+	protected void flushBuffer() throws IOException
+	{
+		buffer.flip();
+		while( buffer.hasRemaining() )
+			channel.write( buffer );
+		buffer.clear();
+	}
+
+	protected void endChromosome()
+	{
+		if( currentChr != null )
+		{
+			chrNames.add( currentChr );
+			chrOffsets.add( currentOffset );
+			chrLengths.add( currentLength );
+			currentChr = null;
+		}
+	}
+
+	/**
+	 * Finish the last chromosome, write the chromosome index and close the file.
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		endChromosome();
+		flushBuffer();
+
+		final long indexOffset = channel.position();
+		buffer.putInt( chrNames.size() );
+		for( int i = 0; i < chrNames.size(); i++ )
+		{
+			final byte[] name = chrNames.get( i ).getBytes( "UTF-8" );
+			if( buffer.remaining() < name.length + 16 )
+				flushBuffer();
+			buffer.putInt( name.length );
+			buffer.put( name );
+			buffer.putLong( chrOffsets.get( i ) );
+			buffer.putInt( chrLengths.get( i ) );
+		}
+		flushBuffer();
+
+		//Point the header to the index
+		buffer.putLong( indexOffset );
+		buffer.flip();
+		channel.write( buffer, 8 );
+		buffer.clear();
+
+		channel.close();
+		file.close();
+	}
+}
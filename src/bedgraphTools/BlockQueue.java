@@ -0,0 +1,95 @@
+package bedgraphTools;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Connects two threads of a BedgraphPipeline. The producer writes entries to the queue as to any BedgraphSink,
+ * they are collected into BedgraphBlocks and handed over block wise. The consumer passes them to its sink (drainTo).
+ * A fixed number of blocks is recycled, so a fast producer waits for the consumer instead of filling the memory.
+ */
+public class BlockQueue implements BedgraphSink
+{
+	public static final int BLOCKS = 4;
+
+	protected final ArrayBlockingQueue<BedgraphBlock> full = new ArrayBlockingQueue<BedgraphBlock>( BLOCKS );
+	protected final ArrayBlockingQueue<BedgraphBlock> free = new ArrayBlockingQueue<BedgraphBlock>( BLOCKS );
+
+	//Block currently filled by the producer
+	protected BedgraphBlock block = null;
+
+	public BlockQueue()
+	{
+		for( int i = 0; i < BLOCKS; i++ )
+			free.add( new BedgraphBlock() );
+	}
+
+	@Override
+	public void write( final String chrom, final int start, final int end, final float score ) throws IOException
+	{
+		if( block == null )
+			block = take( free );
+
+		if( block.add( chrom, start, end, score ) )
+		{
+			put( full, block );
+			block = null;
+		}
+	}
+
+	/**
+	 * Hand over the remaining entries and mark the end of the stream.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if( block == null )
+			block = take( free );
+		block.last = true;
+		put( full, block );
+		block = null;
+	}
+
+	/**
+	 * Consumer side: pass all entries to the sink until the producer closes the queue, then close the sink.
+	 * @param sink
+	 * @throws IOException
+	 */
+	public void drainTo( final BedgraphSink sink ) throws IOException
+	{
+		boolean last = false;
+		while( !last )
+		{
+			final BedgraphBlock current = take( full );
+			current.writeTo( sink );
+			last = current.isLast();
+			current.clear();
+			put( free, current );
+		}
+		sink.close();
+	}
+
+	protected static BedgraphBlock take( final ArrayBlockingQueue<BedgraphBlock> queue ) throws IOException
+	{
+		try
+		{
+			return queue.take();
+		}
+		catch (InterruptedException e)
+		{
+			throw new IOException( "Interrupted while waiting for the next block" );
+		}
+	}
+
+	protected static void put( final ArrayBlockingQueue<BedgraphBlock> queue, final BedgraphBlock block ) throws IOException
+	{
+		try
+		{
+			queue.put( block );
+		}
+		catch (InterruptedException e)
+		{
+			throw new IOException( "Interrupted while handing over a block" );
+		}
+	}
+}
@@ -1,211 +1,100 @@
 package bedgraphTools;
 
-
-
-import inputOutput.TextFileAccess;
-
-import java.io.BufferedReader;
-import java.util.ArrayList;
-
 public class BlurBedgraph 
 { 
-	protected double[] gaussianKernel;
-	protected static float OUT_OF_BOUNDARY_VALUE = 0 ; 
+	//Number of box filters approximating the gaussian with -filter=box
+	protected static final int BOX_PASSES = 3; 
+	
+	//Kernel length from which the FFT convolution is used by default. BlurBenchmark measured the crossover at length 13, but up to
+	//length 31 the FFT gains less than a factor of two, so the exact direct convolution is kept there (FFT differs by up to 4e-6).
+	public static final int FFT_MIN_KERNEL_LENGTH = 31; 
 	
 	/**
 	 * Construct a BlurBedgraph class. Define the gaussian sigma and the bedgraph-file to blur. 
 	 * @param sigma
+	 * @param filter gaussian (direct or FFT convolution depending on the kernel length), direct, fft or box (running sum box filters)
+	 * @param derivative 0 to blur, 1 or 2 to convolve with the first or second derivative of the gaussian instead
+	 * @param compressedInput expand run length encoded entries on the fly
+	 * @param compressedOutput run length encode the blurred positions on the fly
 	 * @param bedgraph
 	 */
-	public BlurBedgraph( final float sigma, final String bedgraph )
+	public BlurBedgraph( final float sigma, final String filter, final int derivative, final boolean compressedInput, final boolean compressedOutput, final String bedgraph )
 	{  
-		setGaussianKernel( sigma ); 
-		readBedgraph( bedgraph );
-		System.exit( 0 ); 
-	}
-	
-	/**
-	 * Parse the input bedgraph file. Blur on the fly using a gaussian kernel with defined sigma. 
-	 * @param bedgraph
-	 */
-	public void readBedgraph( final String bedgraph )
-	{ 
+		BedgraphSink out = new BedgraphPrinter(); 
+		if( compressedOutput )
+			out = new CompressFilter( out ); 
 		
-		BufferedReader in = TextFileAccess.openFileRead( bedgraph ); 
-		String line = "Empty first line"; 
-		String chrId = "";
+		BedgraphSink blur = createFilter( sigma, filter, derivative, out ); 
+		if( compressedInput )
+			blur = new ExpandFilter( blur ); 
 		
-		//Initiate the ArrayList holding the values to convolve.  
-		ArrayList<BEDgraphEntry> valueArray = new ArrayList<BEDgraphEntry>(); 
-		 
-		try
-		{ 
-			while( in.ready() )
-			{ 
-				line = in.readLine();  
-				
-				//Add current BEDgraph entry to the valueArray 
-				valueArray = addAndShift( valueArray, line ); 
-				
-				//Check if the current entry is representing a new chromosome (new chrId). 
-				if( !valueArray.get( valueArray.size() - 1 ).getChrom().equals( chrId ) )
-				{
-					//Check if the current value is the first entry. 
-					if( !chrId.equals("") )	
-					{ 
-						//Process the last entries.
-						valueArray = processEndOfChromosome( valueArray ); 
-					}
-					
-					//Assign current entry's chromosome id to chrId
-					chrId = valueArray.get( valueArray.size() -1 ).getChrom(); 
-				}
-				
-				//Check if the valueArray is smaller than the gaussian kernel
-				if( valueArray.size() < getGaussianKernel().length )
-				{
-					//If of exact the right size, print the out-of-boundary value. 
-					if( valueArray.size() == ( getGaussianKernel().length - 1 )/2  )
-					{
-						printOutOfBoundaryValues( valueArray ); 
-					}
-				}
-				
-				//If everything is 'normal', then blur. 
-				else 
-				{
-					System.out.println( getBlurredBEDgraphEntry( valueArray ) ); 				
-				}
-				
-			}
-			//Process last lines
-			processEndOfFile( valueArray ); 
-		}
-		catch (Exception e) 
-		{
-			System.err.println( "Cannot process the bedgraph entry: ." + line );
-			System.exit( 1 ); 
-		} 
-	}
-	
-	
-	/**
-	 * Get the convolved center position of the value array. 
-	 * @param valueArray
-	 * @return
-	 */
-	public BEDgraphEntry getBlurredBEDgraphEntry( final ArrayList<BEDgraphEntry> valueArray )
-	{
-		//Create a new object to not change the input values
-		BEDgraphEntry output = new BEDgraphEntry( valueArray.get( getArrayMiddleIndex( valueArray) ).toString() ); 
-		
-		float blurredValue = 0.0f; 
-		for( int i = 0; i < getGaussianKernel().length; i++ )
-		{
-			blurredValue += getGaussianKernel()[ i ] * valueArray.get( i ).getScore();  
-		}
-		
-		output.setScore( blurredValue ); 
-		
-		return output; 
-	}
-	
-	public int getArrayMiddleIndex( final ArrayList<BEDgraphEntry> input )
-	{
-		return ( ( input.size() - 1 )/ 2 ); 
+		readBedgraph( bedgraph, blur ); 
+		System.exit( 0 ); 
 	}
 	
 	/**
-	 * Adds a value to the input arraylist. 
-	 * If the input arrayList has the same number of entries as the gaussian kernel, then the oldest entry is removed.  
-	 * @param input
-	 * @param line
+	 * Create the filter convolving with the gaussian, or with its derivative (a smoothed slope or curvature in a single pass).
+	 * @param sigma
+	 * @param filter
+	 * @param derivative 0, 1 or 2. Derivatives are not approximated by box filters.
+	 * @param out
 	 * @return
 	 */
-	public ArrayList<BEDgraphEntry> addAndShift( ArrayList<BEDgraphEntry> input, final String line )
+	public static BedgraphSink createFilter( final float sigma, final String filter, final int derivative, final BedgraphSink out )
 	{
+		if( filter.equals("box") && derivative == 0 )
+			return BoxFilter.createGaussianApproximation( sigma, BOX_PASSES, out ); 
 		
-		input.add( new BEDgraphEntry( line ) ); 
-		
-		if( input.size() > getGaussianKernel().length )
-		{
-			input.remove( 0 ); 			
-		}
-		
-		return input; 
+		final double[] kernel = derivative == 0 ? GaussianKernel.createGaussianKernel1DDouble( sigma, true ) : GaussianKernel.createGaussianDerivativeKernel1DDouble( sigma, derivative ); 
+		if( filter.equals("fft") || ( filter.equals("gaussian") && kernel.length >= FFT_MIN_KERNEL_LENGTH ) )
+			return new FFTBlurFilter( kernel, out ); 
+		else
+			return new BlurFilter( kernel, out ); 
 	}
 	
 	/**
-	 * Print the defined OUT_OF_BOUNDARY_VALUE as score for all BEDgraphEntries in the input list. 
-	 * @param values
-	 */
-	public void printOutOfBoundaryValues( final ArrayList<BEDgraphEntry> values )
-	{
-		for( BEDgraphEntry e : values )
-		{
-			e.setScore( OUT_OF_BOUNDARY_VALUE ); 
-			System.out.println( e ); 
-		}
-	}
-	
-	/**
-	 * Process the last lines representing one chromosome. Return the list for the next chromosome. 
-	 * @param input
-	 * @return
+	 * Parse the input bedgraph file and pass every entry to the filter, which blurs on the fly. 
+	 * @param bedgraph
+	 * @param filter
 	 */
-	public ArrayList<BEDgraphEntry> processEndOfChromosome( final ArrayList<BEDgraphEntry> input )
-	{
-		
-		ArrayList<BEDgraphEntry> newChr = new ArrayList<BEDgraphEntry>(); 
-		newChr.add( input.get( input.size() - 1 ) ); 
-		
-		ArrayList<BEDgraphEntry> oldChr = new ArrayList<BEDgraphEntry>();
-		for( int i = input.size() - ( input.size() + 1 )/2 ; i < ( input.size() - 1); i++ )
-		{
-			oldChr.add( input.get( i ) ); 
+	public void readBedgraph( final String bedgraph, final BedgraphSink filter )
+	{ 
+		BedgraphLineReader in = null; 
+		try
+		{ 
+			//Closing the filter processes the last lines
+			in = new BedgraphLineReader( bedgraph ); 
+			in.writeTo( filter ); 
+			in.close(); 
 		}
-		printOutOfBoundaryValues( oldChr ); 
-		
-		return newChr; 
-	}
-	
-
-	/**
-	 * Process the last lines of the bedgraph file. 
-	 * @param input
-	 * @return
-	 */
-	public void processEndOfFile( final ArrayList<BEDgraphEntry> input )
-	{
-		ArrayList<BEDgraphEntry> oldChr = new ArrayList<BEDgraphEntry>();
-		for( int i = ( input.size() - ( ( input.size() + 1 )/2 - 1) ); i < ( input.size() ); i++ )
+		catch (Exception e) 
 		{
-			oldChr.add( input.get( i ) ); 
-		}
-		printOutOfBoundaryValues( oldChr ); 
-		 
+			System.err.println( "Cannot process the bedgraph entry: ." + ( in == null ? e : in.getLine() ) );
+			System.exit( 1 ); 
+		} 
 	}
 	
-	//Getter and setter
-	public void setGaussianKernel( final float sigma ) { this.gaussianKernel = GaussianKernel.createGaussianKernel1DDouble( sigma, true ); }
-	public double[] getGaussianKernel() { return this.gaussianKernel; } 
-	
-	
 	/**
 	 * Main method used for running this script from shell
 	 * @param args
 	 */
 	public static void main(String[] args) 
 	{
-		if( args.length != 2 )
+		if( args.length < 2 || args.length > 6 )
 		{
 			final String info = "\n#######################\n" + 
-					"java -jar blurBedgraph -sigma=[float] bedgraphFile\n" +
+					"java -jar blurBedgraph -sigma=[float] -filter=[gaussian,direct,fft,box] -derivative=[0,1,2] -input=[decompressed,compressed] -output=[decompressed,compressed] bedgraphFile\n" +
 					"#######################\n" + 
 					"Gaussian Blurs the bedgraph with a gaussian Kernel sized by the given sigma.\n" +
 					"Specify the sigma (-sigma=[float]).\n" +
-					"Outputs the blurred bedgraph to STDOUT.\n" +
-					"Important: Decompress your bedgraph prior use!\n" +
+					"Large kernels (length >= " + FFT_MIN_KERNEL_LENGTH + ", i.e. sigma >= 5) are convolved block wise by FFT, smaller ones directly (-filter=gaussian, default).\n" +
+					"Optional: force the direct (-filter=direct) or the FFT convolution (-filter=fft). Both agree within float precision.\n" +
+					"Optional: approximate the gaussian by three running sum box filters (-filter=box). Its run time does not depend on sigma, recommended for very large sigmas.\n" +
+					"Optional: convolve with the first (-derivative=1) or second (-derivative=2) derivative of the gaussian to get the slope or curvature of the blurred bedgraph in a single pass.\n" +
+				"The first derivative replaces blurBedgraph followed by deriveBedgraph. Not available for -filter=box.\n" +
+				"Outputs the blurred bedgraph to STDOUT.\n" +
+					"Important: Decompress your bedgraph prior use, or let it be expanded on the fly (-input=compressed). Empty positions are filled as by decompressBedgraph.\n" +
+					"Optional: run length encode the blurred bedgraph on the fly (-output=compressed), as by compressBedgraph.\n" +
 					"\n\n"; 
 			System.err.println( info ); 
 		}
@@ -223,7 +112,47 @@ public class BlurBedgraph
 				System.exit( 1 );
 			}
 			
-			new BlurBedgraph( sigma, args[ 1 ] );
+			String filter = "gaussian"; 
+			int derivative = 0; 
+			boolean compressedInput = false; 
+			boolean compressedOutput = false; 
+			for( int i = 1; i < args.length - 1; i++ )
+			{
+				final String value = args[ i ].substring( args[ i ].indexOf("=") + 1);
+				if( args[ i ].startsWith( "-filter" ) )
+				{
+					filter = value; 
+					if( !filter.equals("gaussian") && !filter.equals("direct") && !filter.equals("fft") && !filter.equals("box") )
+					{
+						System.err.println( "Please specify a filter: gaussian kernel (gaussian, direct, fft) or box filter approximation (box)" ); 
+						System.exit( 1 );
+					}
+				}
+				else if( args[ i ].startsWith( "-derivative" ) && ( value.equals("0") || value.equals("1") || value.equals("2") ) )
+				{
+					derivative = Integer.parseInt( value ); 
+				}
+				else if( ( args[ i ].startsWith( "-input" ) || args[ i ].startsWith( "-output" ) ) && ( value.equals("compressed") || value.equals("decompressed") ) )
+				{
+					if( args[ i ].startsWith( "-input" ) )
+						compressedInput = value.equals("compressed"); 
+					else
+						compressedOutput = value.equals("compressed"); 
+				}
+				else
+				{
+					System.err.println( "Unknown option " + args[ i ] + ". Please specify -filter=[gaussian,direct,fft,box], -derivative=[0,1,2], -input=[decompressed,compressed] or -output=[decompressed,compressed]" ); 
+					System.exit( 1 );
+				}
+			}
+			
+			if( derivative != 0 && filter.equals("box") )
+			{
+				System.err.println( "Derivatives can not be approximated by box filters, please use -filter=[gaussian,direct,fft]" ); 
+				System.exit( 1 );
+			}
+			
+			new BlurBedgraph( sigma, filter, derivative, compressedInput, compressedOutput, args[ args.length - 1 ] );
 			
 		}		
 	}
@@ -0,0 +1,106 @@
+package bedgraphTools;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Measures the time per position of the direct (BlurFilter) and the FFT based (FFTBlurFilter) gaussian blur for
+ * increasing sigmas, and the largest difference between both. Used to choose BlurBedgraph.FFT_MIN_KERNEL_LENGTH.
+ */
+public class BlurBenchmark
+{
+	public static final float[] SIGMAS = new float[] { 1, 2, 5, 10, 15, 20, 30, 50, 100, 200, 500 };
+
+	public BlurBenchmark( final int positions )
+	{
+		final Random random = new Random( 42 );
+		final float[] scores = new float[ positions ];
+		for( int i = 0; i < positions; i++ )
+			scores[ i ] = random.nextInt( 50 ) + random.nextFloat();
+
+		System.out.println( "sigma\tkernelLength\tdirect ns/position\tfft ns/position\tmax relative difference" );
+		int crossover = -1;
+		for( final float sigma : SIGMAS )
+		{
+			final double[] kernel = GaussianKernel.createGaussianKernel1DDouble( sigma, true );
+			final float[] direct = new float[ positions ];
+			final float[] fft = new float[ positions ];
+
+			//Warm up, then time
+			final double directTime = Math.min( run( new BlurFilter( kernel, new ArraySink( direct ) ), scores ), run( new BlurFilter( kernel, new ArraySink( direct ) ), scores ) );
+			final double fftTime = Math.min( run( new FFTBlurFilter( kernel, new ArraySink( fft ) ), scores ), run( new FFTBlurFilter( kernel, new ArraySink( fft ) ), scores ) );
+
+			double maxDifference = 0;
+			double maxValue = 0;
+			for( int i = 0; i < positions; i++ )
+			{
+				maxDifference = Math.max( maxDifference, Math.abs( direct[ i ] - fft[ i ] ) );
+				maxValue = Math.max( maxValue, Math.abs( direct[ i ] ) );
+			}
+
+			if( crossover == -1 && fftTime < directTime )
+				crossover = kernel.length;
+
+			System.out.println( sigma + "\t" + kernel.length + "\t" + (float) ( directTime / positions ) + "\t" + (float) ( fftTime / positions ) + "\t" + (float) ( maxDifference / maxValue ) );
+		}
+		System.out.println( "FFT is faster from kernel length " + crossover + " on (BlurBedgraph.FFT_MIN_KERNEL_LENGTH = " + BlurBedgraph.FFT_MIN_KERNEL_LENGTH + ")" );
+	}
+
+	/**
+	 * @return nanoseconds to filter all scores as a single chromosome
+	 */
+	protected double run( final BlurFilter filter, final float[] scores )
+	{
+		final long time = System.nanoTime();
+		try
+		{
+			for( int i = 0; i < scores.length; i++ )
+				filter.write( "chr1", i, i + 1, scores[ i ] );
+			filter.close();
+		}
+		catch (IOException e)
+		{
+			System.err.println( "Unable to run the benchmark. " + e );
+			System.exit( 1 );
+		}
+		return System.nanoTime() - time;
+	}
+
+	/**
+	 * Stores the filtered scores by position
+	 */
+	protected static class ArraySink implements BedgraphSink
+	{
+		final float[] scores;
+
+		public ArraySink( final float[] scores ) { this.scores = scores; }
+
+		@Override
+		public void write( final String chrom, final int start, final int end, final float score ) { scores[ start ] = score; }
+
+		@Override
+		public void close() {}
+	}
+
+	/**
+	 * Main method used for running this script from shell
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		if( args.length != 1 )
+		{
+			final String info = "\n#######################\n" +
+					"java -cp geneArchitectureToolbox.jar bedgraphTools.BlurBenchmark -positions=N\n" +
+					"#######################\n" +
+					"Blurs N random positions with the direct and the FFT based gaussian convolution for increasing sigmas.\n" +
+					"Prints the time per position of both, their largest relative difference and the kernel length from which FFT is faster.\n" +
+					"\n";
+			System.err.println( info );
+		}
+		else
+		{
+			new BlurBenchmark( Integer.parseInt( args[ 0 ].substring( args[ 0 ].indexOf("=") + 1 ) ) );
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package bedgraphTools;
+
+import java.io.IOException;
+
+/**
+ * Convolves a decompressed bedgraph (one entry per position) with a symmetric kernel on the fly.
+ * The last kernel.length entries are kept in a circular buffer of primitive positions and scores, so every entry
+ * costs one pass over the kernel and nothing is shifted or allocated.
+ *
+ * Chromosome boundaries: the first and last (kernel.length - 1)/2 positions of each chromosome can not be convolved
+ * and are written with OUT_OF_BOUNDARY_VALUE. The first ones also enter the convolution of their neighbours with this value.
+ */
+public class BlurFilter implements BedgraphSink
+{
+	public static float OUT_OF_BOUNDARY_VALUE = 0;
+
+	protected final double[] kernel;
+	protected final int radius;
+	protected final BedgraphSink out;
+
+	//Circular buffer, logical index j (0 = oldest) is stored at ( head + j ) % kernel.length
+	protected final int[] starts, ends;
+	protected final float[] scores;
+	protected int head = 0, count = 0;
+	protected String chrId = null;
+
+	public BlurFilter( final double[] kernel, final BedgraphSink out )
+	{
+		this.kernel = kernel;
+		this.radius = ( kernel.length - 1 ) / 2;
+		this.out = out;
+
+		this.starts = new int[ kernel.length ];
+		this.ends = new int[ kernel.length ];
+		this.scores = new float[ kernel.length ];
+	}
+
+	@Override
+	public void write( final String chrom, final int start, final int end, final float score ) throws IOException
+	{
+		if( chrId == null )
+		{
+			chrId = chrom;
+		}
+		else if( !chrom.equals( chrId ) )
+		{
+			endOfChromosome();
+			chrId = chrom;
+		}
+		push( start, end, score );
+
+		if( count < kernel.length )
+		{
+			//Start of a chromosome, write and use the out-of-boundary value
+			if( count == radius )
+			{
+				for( int j = 0; j < count; j++ )
+				{
+					final int p = index( j );
+					scores[ p ] = OUT_OF_BOUNDARY_VALUE;
+					out.write( chrId, starts[ p ], ends[ p ], OUT_OF_BOUNDARY_VALUE );
+				}
+			}
+		}
+		else
+		{
+			writeMiddle( index( radius ) );
+		}
+	}
+
+	/**
+	 * Write the convolved value of the middle entry of the full buffer.
+	 * @param middle buffer index of the middle entry
+	 * @throws IOException
+	 */
+	protected void writeMiddle( final int middle ) throws IOException
+	{
+		out.write( chrId, starts[ middle ], ends[ middle ], convolve() );
+	}
+
+	/**
+	 * Convolve the full buffer. The summation order equals the former ArrayList based implementation.
+	 * @return the blurred value of the middle entry
+	 */
+	protected float convolve()
+	{
+		float blurredValue = 0.0f;
+		int p = head;
+		for( int i = 0; i < kernel.length; i++ )
+		{
+			blurredValue += kernel[ i ] * scores[ p ];
+			if( ++p == kernel.length )
+				p = 0;
+		}
+		return blurredValue;
+	}
+
+	protected void push( final int start, final int end, final float score )
+	{
+		final int p;
+		if( count == kernel.length )
+		{
+			p = head;
+			dropped( scores[ p ] );
+			head = head + 1 == kernel.length ? 0 : head + 1;
+		}
+		else
+		{
+			p = index( count );
+			count++;
+		}
+		starts[ p ] = start;
+		ends[ p ] = end;
+		scores[ p ] = score;
+	}
+
+	/**
+	 * Called with the score leaving the full buffer.
+	 * @param score
+	 */
+	protected void dropped( final float score ) {}
+
+	protected int index( final int j )
+	{
+		final int p = head + j;
+		return p < kernel.length ? p : p - kernel.length;
+	}
+
+	/**
+	 * Write the last positions of the current chromosome, which could not be convolved, and empty the buffer.
+	 * The first entry of the next chromosome is counted as in the former list based implementation.
+	 * @throws IOException
+	 */
+	protected void endOfChromosome() throws IOException
+	{
+		final int size = Math.min( count + 1, kernel.length );
+		final int offset = count - ( size - 1 );
+		for( int j = size - ( size + 1 ) / 2; j < size - 1; j++ )
+		{
+			final int p = index( offset + j );
+			out.write( chrId, starts[ p ], ends[ p ], OUT_OF_BOUNDARY_VALUE );
+		}
+
+		head = 0;
+		count = 0;
+		reset();
+	}
+
+	/**
+	 * Called when the buffer is emptied at a new chromosome.
+	 */
+	protected void reset() {}
+
+	@Override
+	public void close() throws IOException
+	{
+		//Last positions of the last chromosome
+		for( int j = count - ( ( count + 1 ) / 2 - 1 ); j < count; j++ )
+		{
+			final int p = index( j );
+			out.write( chrId, starts[ p ], ends[ p ], OUT_OF_BOUNDARY_VALUE );
+		}
+		out.close();
+	}
+
+	public double[] getKernel() { return kernel; }
+}
@@ -0,0 +1,105 @@
+package bedgraphTools;
+
+/**
+ * Running mean over an odd number of positions. The sum is updated with the entering and leaving score,
+ * so the cost per position does not depend on the width. Boundaries are handled as in BlurFilter.
+ *
+ * A few box filters in a row approximate a gaussian (see createGaussianApproximation), which is much faster than
+ * the direct convolution for very large sigmas.
+ */
+public class BoxFilter extends BlurFilter
+{
+	//Recompute the running sum from time to time to avoid accumulating rounding errors
+	protected static final int RECOMPUTE_INTERVAL = 1 << 16;
+
+	protected double sum = 0;
+	protected boolean sumValid = false;
+	protected float lastDropped = 0;
+	protected int updates = 0;
+
+	/**
+	 * @param width odd number of positions
+	 * @param out
+	 */
+	public BoxFilter( final int width, final BedgraphSink out )
+	{
+		super( createBoxKernel( width ), out );
+	}
+
+	public static double[] createBoxKernel( final int width )
+	{
+		final double[] kernel = new double[ width ];
+		for( int i = 0; i < width; i++ )
+			kernel[ i ] = 1.0 / width;
+		return kernel;
+	}
+
+	/**
+	 * Chain of box filters whose combined variance matches a gaussian with sigma (W. Wells, 1986; widths as in P. Kovesi, 2010).
+	 * @param sigma
+	 * @param passes number of box filters, 3 is usually close enough
+	 * @param out
+	 * @return the first filter of the chain
+	 */
+	public static BedgraphSink createGaussianApproximation( final double sigma, final int passes, final BedgraphSink out )
+	{
+		final int[] widths = getGaussianWidths( sigma, passes );
+
+		BedgraphSink sink = out;
+		for( int i = widths.length - 1; i >= 0; i-- )
+			sink = new BoxFilter( widths[ i ], sink );
+		return sink;
+	}
+
+	/**
+	 * Odd box widths w_l and w_l + 2, so that the sum of the box variances ( w^2 - 1 )/12 is closest to sigma^2.
+	 * @param sigma
+	 * @param passes
+	 * @return
+	 */
+	public static int[] getGaussianWidths( final double sigma, final int passes )
+	{
+		int lower = (int) Math.floor( Math.sqrt( 12 * sigma * sigma / passes + 1 ) );
+		if( lower % 2 == 0 )
+			lower--;
+		lower = Math.max( 1, lower );
+		final int upper = lower + 2;
+
+		final long m = Math.round( ( 12 * sigma * sigma - passes * lower * lower - 4 * passes * lower - 3 * passes ) / ( -4.0 * lower - 4 ) );
+
+		final int[] widths = new int[ passes ];
+		for( int i = 0; i < passes; i++ )
+			widths[ i ] = i < m ? lower : upper;
+		return widths;
+	}
+
+	@Override
+	protected float convolve()
+	{
+		if( !sumValid || ++updates == RECOMPUTE_INTERVAL )
+		{
+			sum = 0;
+			for( int j = 0; j < count; j++ )
+				sum += scores[ index( j ) ];
+			sumValid = true;
+			updates = 0;
+		}
+		else
+		{
+			sum += scores[ index( count - 1 ) ] - (double) lastDropped;
+		}
+		return (float) ( sum / kernel.length );
+	}
+
+	@Override
+	protected void dropped( final float score )
+	{
+		lastDropped = score;
+	}
+
+	@Override
+	protected void reset()
+	{
+		sumValid = false;
+	}
+}
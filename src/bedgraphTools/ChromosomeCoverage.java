@@ -0,0 +1,46 @@
+package bedgraphTools;
+
+/**
+ * Coverage values of a single chromosome, specialised for int (IntCoverage) or float (FloatCoverage) values.
+ * Positions without a value are reported as 0.
+ */
+public abstract class ChromosomeCoverage
+{
+	/**
+	 * Add the value of an input line.
+	 * @param entries tab separated fields of a bedgraph/pileup/coverage line
+	 * @param yValuePos field holding the value (3 for bedgraph and pileup, 2 for coverage)
+	 */
+	public abstract void add( final String[] entries, final int yValuePos );
+
+	/**
+	 * Prepare the coverage for window extraction after the last add.
+	 */
+	public abstract void finish();
+
+	/**
+	 * @return the number of stored values
+	 */
+	public abstract int size();
+
+	/**
+	 * Extract the window [start, end) in its primitive type and pass it to the handler.
+	 * Values are reversed for windows on the minus strand.
+	 * @param entry
+	 * @param start
+	 * @param end
+	 * @param plusStrand
+	 * @param handler
+	 */
+	public abstract void extractWindow( final String[] entry, final int start, final int end, final boolean plusStrand, final WindowHandler handler );
+
+	/**
+	 * Pass the sum and the number of covered (non zero) positions of the window [start, end) to the handler.
+	 * Both are differences of a prefix sum index, which is built on the first call.
+	 * @param entry
+	 * @param start
+	 * @param end
+	 * @param handler
+	 */
+	public abstract void extractSummary( final String[] entry, final int start, final int end, final SummaryHandler handler );
+}
@@ -0,0 +1,59 @@
+package bedgraphTools;
+
+import java.io.IOException;
+
+/**
+ * Run length encodes bedgraph entries on the fly, as CompressBedgraph does: neighbouring entries of a chromosome
+ * with the same score are joined into a single entry before they are passed to the next sink.
+ * Only the current run (chromosome, start, end, score) is kept.
+ *
+ * With an epsilon > 0, entries whose score differs by at most epsilon from the score of the run's first entry are joined
+ * as well and the run keeps that first score. Comparing with the first score keeps slowly drifting scores from being joined.
+ */
+public class CompressFilter implements BedgraphSink
+{
+	protected final BedgraphSink out;
+	protected final float epsilon;
+
+	//Current run, not yet written
+	protected String chrom = null;
+	protected int start, end;
+	protected float score;
+
+	public CompressFilter( final BedgraphSink out )
+	{
+		this( out, 0 );
+	}
+
+	public CompressFilter( final BedgraphSink out, final float epsilon )
+	{
+		this.out = out;
+		this.epsilon = epsilon;
+	}
+
+	@Override
+	public void write( final String chrom, final int start, final int end, final float score ) throws IOException
+	{
+		if( this.chrom != null && this.end == start && ( this.score == score || Math.abs( this.score - score ) <= epsilon ) && this.chrom.equals( chrom ) )
+		{
+			this.end = end;
+			return;
+		}
+
+		if( this.chrom != null )
+			out.write( this.chrom, this.start, this.end, this.score );
+
+		this.chrom = chrom;
+		this.start = start;
+		this.end = end;
+		this.score = score;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if( chrom != null )
+			out.write( chrom, start, end, score );
+		out.close();
+	}
+}
@@ -0,0 +1,216 @@
+package bedgraphTools;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Zoom levels of a binary coverage file: the mean over bins of 10, 100, 1000 and 10000 positions.
+ * Every level is a binary coverage file of its own, stored next to the coverage file as coverage.bcov.zoom10 etc.
+ * Bins are aligned to chromosome position 0, positions beyond the chromosome end count as 0 (as in BinaryCoverage).
+ *
+ * Windows that are scaled down to a few bins anyway are read from the coarsest level that still provides
+ * MIN_POSITIONS_PER_BIN values per bin, instead of reading every position of the window.
+ */
+public class CoveragePyramid
+{
+	public static final int[] ZOOMS = new int[] { 10, 100, 1000, 10000 };
+
+	//Fewest values of a zoom level that are combined into one output bin
+	public static final int MIN_POSITIONS_PER_BIN = 4;
+
+	//Positions read from the coverage at once while building the levels
+	protected static final int BLOCK_SIZE = 1 << 16;
+
+	protected final int[] zooms;
+	protected final BinaryCoverage[] levels;
+
+	protected CoveragePyramid( final int[] zooms, final BinaryCoverage[] levels )
+	{
+		this.zooms = zooms;
+		this.levels = levels;
+	}
+
+	public static File getLevelFile( final File coverage, final int zoom )
+	{
+		return new File( coverage.getPath() + ".zoom" + zoom );
+	}
+
+	/**
+	 * Open the zoom levels stored next to the coverage file.
+	 * @param coverage
+	 * @return null if no zoom level has been built for this file
+	 * @throws IOException
+	 */
+	public static CoveragePyramid open( final File coverage ) throws IOException
+	{
+		int nrOfLevels = 0;
+		for( final int zoom : ZOOMS )
+			if( getLevelFile( coverage, zoom ).exists() )
+				nrOfLevels++;
+
+		if( nrOfLevels == 0 )
+			return null;
+
+		final int[] zooms = new int[ nrOfLevels ];
+		final BinaryCoverage[] levels = new BinaryCoverage[ nrOfLevels ];
+		int i = 0;
+		for( final int zoom : ZOOMS )
+		{
+			final File level = getLevelFile( coverage, zoom );
+			if( level.exists() )
+			{
+				if( level.lastModified() < coverage.lastModified() )
+					System.err.println( "Zoom level " + level + " is older than " + coverage + ". Please rebuild the zoom levels." );
+
+				zooms[ i ] = zoom;
+				levels[ i++ ] = new BinaryCoverage( level );
+			}
+		}
+		return new CoveragePyramid( zooms, levels );
+	}
+
+	/**
+	 * Build all zoom levels of a binary coverage file in one pass over its values.
+	 * @param coverage
+	 * @throws IOException
+	 */
+	public static void build( final File coverage ) throws IOException
+	{
+		final BinaryCoverage in = new BinaryCoverage( coverage );
+		final BinaryCoverageWriter[] out = new BinaryCoverageWriter[ ZOOMS.length ];
+		for( int l = 0; l < ZOOMS.length; l++ )
+			out[ l ] = new BinaryCoverageWriter( getLevelFile( coverage, ZOOMS[ l ] ) );
+
+		//Sum of the current bin of every level. A full bin of level l is added to the bin of level l + 1.
+		final double[] sums = new double[ ZOOMS.length ];
+		final float[] block = new float[ BLOCK_SIZE ];
+		for( final String chr : in.getChromosomes() )
+		{
+			for( final BinaryCoverageWriter level : out )
+				level.startChromosome( chr );
+
+			final int length = in.getLength( chr );
+			for( int blockStart = 0; blockStart < length; blockStart += BLOCK_SIZE )
+			{
+				final int blockEnd = (int) Math.min( (long) blockStart + BLOCK_SIZE, length );
+				in.fillWindow( chr, blockStart, blockEnd, true, block );
+				for( int pos = blockStart; pos < blockEnd; pos++ )
+				{
+					sums[ 0 ] += block[ pos - blockStart ];
+					for( int l = 0; l < ZOOMS.length && ( pos + 1 ) % ZOOMS[ l ] == 0; l++ )
+						endBin( out, sums, l );
+				}
+			}
+
+			//Last, partial bins
+			for( int l = 0; l < ZOOMS.length; l++ )
+				if( length % ZOOMS[ l ] != 0 )
+					endBin( out, sums, l );
+		}
+
+		for( final BinaryCoverageWriter level : out )
+			level.close();
+		in.close();
+	}
+
+	protected static void endBin( final BinaryCoverageWriter[] out, final double[] sums, final int l ) throws IOException
+	{
+		out[ l ].putFloat( (float) ( sums[ l ] / ZOOMS[ l ] ) );
+		if( l + 1 < sums.length )
+			sums[ l + 1 ] += sums[ l ];
+		sums[ l ] = 0;
+	}
+
+	/**
+	 * Return the coarsest zoom level that still provides MIN_POSITIONS_PER_BIN values for each of the bins, -1 if there is none.
+	 * @param length of the window
+	 * @param bins
+	 * @return
+	 */
+	public int selectLevel( final int length, final int bins )
+	{
+		for( int l = zooms.length - 1; l >= 0; l-- )
+			if( (long) length >= (long) zooms[ l ] * bins * MIN_POSITIONS_PER_BIN )
+				return l;
+		return -1;
+	}
+
+	/**
+	 * Read the window [start, end) of chr from the coarsest suitable zoom level. Value i of the returned window is the mean
+	 * over zoom positions, counted from the 5' end of the window. As a window bin overlaps two bins of the level by the same
+	 * total length, its mean is the weighted mean of those two. The last bin is cut or extended to the window length.
+	 * @param chr
+	 * @param start
+	 * @param end
+	 * @param plusStrand
+	 * @param bins the window is scaled to
+	 * @return null if the window is too short for any zoom level
+	 */
+	public float[] getWindow( final String chr, final int start, final int end, final boolean plusStrand, final int bins )
+	{
+		final int l = selectLevel( end - start, bins );
+		if( l == -1 )
+			return null;
+
+		final int zoom = zooms[ l ];
+		final int length = ( end - start + zoom / 2 ) / zoom;
+
+		//Window bins start at the 5' end, the first one is shifted by offset into bin first of the level
+		final int origin = plusStrand ? start : end - length * zoom;
+		final int first = Math.floorDiv( origin, zoom );
+		final float offset = (float) ( origin - (long) first * zoom ) / zoom;
+
+		final float[] values = new float[ length + 1 ];
+		levels[ l ].fillWindow( chr, first, first + length + 1, true, values );
+
+		final float[] window = new float[ length ];
+		for( int i = 0; i < length; i++ )
+		{
+			final float value = values[ i ] + offset * ( values[ i + 1 ] - values[ i ] );
+			if( plusStrand )
+				window[ i ] = value;
+			else
+				window[ length - i - 1 ] = value;
+		}
+		return window;
+	}
+
+	public void close() throws IOException
+	{
+		for( final BinaryCoverage level : levels )
+			level.close();
+	}
+
+	/**
+	 * Main method used for running this script from shell
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		if( args.length != 1 )
+		{
+			final String info = "\n#######################\n" +
+					"java -cp geneArchitectureToolbox.jar bedgraphTools.CoveragePyramid input.bcov\n" +
+					"#######################\n" +
+					"Builds the zoom levels of a binary coverage file created by bedgraphToBinaryCoverage: the mean over bins of 10, 100, 1000 and 10000 positions,\n" +
+					"stored next to the input as input.bcov.zoom10 etc.\n" +
+					"pileupWindow, pileupWindowFloat and MultiTrackWindow with -input=binary -bins=x read windows of at least " + MIN_POSITIONS_PER_BIN + " * x * zoom positions from the coarsest such level\n" +
+					"instead of every position of the window. Please rebuild the levels whenever the binary coverage file changes.\n" +
+					"\n";
+			System.err.println( info );
+		}
+		else
+		{
+			try
+			{
+				build( new File( args[ 0 ] ) );
+			}
+			catch (Exception e)
+			{
+				System.err.println( "Unable to build the zoom levels of " + args[ 0 ] + ": " + e );
+				System.exit( 1 );
+			}
+			System.exit( 0 );
+		}
+	}
+}
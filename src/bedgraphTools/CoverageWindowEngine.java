@@ -0,0 +1,827 @@
+package bedgraphTools;
+
+import inputOutput.CalenderStuff;
+import inputOutput.TextFileAccess;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Extracts the strand aware coverage window of every input.BED entry and passes it to a WindowHandler.
+ * Shared by PileupWindow (int values), PileupWindowFloat and ExtractSubBedGraphs (float values), so parsing,
+ * coverage lookup and the processing modes exist only once. What happens with the windows is up to the handler
+ * (see WindowAggregator).
+ *
+ * Processing modes:
+ * genome - hash the complete coverage file, then extract all windows.
+ * perChromosome - hash and extract one chromosome at a time, on N threads fed by a single pass over both files if threads > 1.
+ * streaming - single pass over coordinate sorted coverage and BED files.
+ * Input format binary memory maps a file written by BedgraphToBinaryCoverage and ignores the processing mode.
+ */
+public class CoverageWindowEngine
+{
+	//Coverage lines handed to a chromosome task at once, and batches queued per chromosome before the reader waits
+	protected static final int LINE_BATCH = 4096;
+	protected static final int QUEUE_BATCHES = 16;
+
+	//Marks the last batch of a chromosome
+	protected static final ArrayList<String> LAST_BATCH = new ArrayList<String>();
+
+	protected final String inputFormat;
+	protected final boolean floatValues;
+	protected final int yValuePos;
+
+	/**
+	 * @param inputFormat bedgraph, pileup, coverage or binary
+	 * @param floatValues store float instead of int values
+	 */
+	public CoverageWindowEngine( final String inputFormat, final boolean floatValues )
+	{
+		this.inputFormat = inputFormat;
+		this.floatValues = floatValues;
+
+		//Define which position of the entry string holds the coverage value
+		if( inputFormat.equals("coverage") )
+			this.yValuePos = 2;
+		else
+			this.yValuePos = 3;
+	}
+
+	/**
+	 * Pass the windows of all entries in inputBED to the handler.
+	 * @param processing genome, perChromosome or streaming
+	 * @param threads number of chromosomes processed in parallel with perChromosome processing
+	 * @param inputCoverage
+	 * @param inputBED
+	 * @param handler
+	 */
+	public void process( final String processing, final int threads, final String inputCoverage, final String inputBED, final WindowHandler handler )
+	{
+		if( inputFormat.equals("binary") )
+			processBinary( inputCoverage, inputBED, handler );
+		else if( processing.equals("genome") )
+			extractWindows( inputBED, loadGenome( inputCoverage ), handler );
+		else if( processing.equals("streaming") )
+			streamWindows( inputCoverage, inputBED, handler );
+		else if( threads > 1 )
+			processChromosomesParallel( inputCoverage, inputBED, threads, handler );
+		else
+			processChromosomes( inputCoverage, inputBED, handler );
+	}
+
+	public ChromosomeCoverage createCoverage()
+	{
+		if( floatValues )
+			return new FloatCoverage();
+		else
+			return new IntCoverage();
+	}
+
+	/**
+	 * Hash the values of all chromosomes.
+	 * @param inputCoverage
+	 * @return
+	 */
+	public HashMap<String, ChromosomeCoverage> loadGenome( final String inputCoverage )
+	{
+		final HashMap<String, ChromosomeCoverage> genome = new HashMap<String, ChromosomeCoverage>();
+
+		BufferedReader in = TextFileAccess.openFileRead( inputCoverage );
+		try
+		{
+			String line;
+			String[] entries;
+			while( in.ready() )
+			{
+				line = in.readLine();
+				entries = line.split("\t");
+
+				ChromosomeCoverage coverage = genome.get( entries[ 0 ] );
+				if( coverage == null )
+				{
+					coverage = createCoverage();
+					genome.put( entries[ 0 ], coverage );
+				}
+				coverage.add( entries, yValuePos );
+			}
+			in.close();
+		}
+		catch (Exception e)
+		{
+			System.err.println( "Unable to hash values specified in input.bedgraph/pileup." );
+			System.exit( 1 );
+		}
+
+		for( ChromosomeCoverage coverage : genome.values() )
+			coverage.finish();
+
+		return genome;
+	}
+
+	/**
+	 * Hash the values of a single chromosome.
+	 * @param inputCoverage
+	 * @param chrId
+	 * @return
+	 */
+	public ChromosomeCoverage loadChromosome( final String inputCoverage, final String chrId )
+	{
+		final ChromosomeCoverage coverage = createCoverage();
+
+		BufferedReader in = TextFileAccess.openFileRead( inputCoverage );
+		try
+		{
+			String line;
+			String[] entries;
+			while( in.ready() )
+			{
+				line = in.readLine();
+				entries = line.split("\t");
+
+				if( entries[ 0 ].equals( chrId ) )
+					coverage.add( entries, yValuePos );
+			}
+			in.close();
+		}
+		catch (Exception e)
+		{
+			System.err.println( "Unable to hash values specified in input.bedgraph/pileup." );
+			System.exit( 1 );
+		}
+		coverage.finish();
+
+		return coverage;
+	}
+
+	/**
+	 * Extract the windows of all BED entries. Chromosomes without coverage result in empty windows.
+	 * @param inputBED
+	 * @param genome
+	 * @param handler
+	 */
+	public void extractWindows( final String inputBED, final HashMap<String, ChromosomeCoverage> genome, final WindowHandler handler )
+	{
+		final ChromosomeCoverage empty = createCoverage();
+		empty.finish();
+
+		BufferedReader in = TextFileAccess.openFileRead( inputBED );
+		try
+		{
+			String line;
+			String[] entries;
+			while( in.ready() )
+			{
+				line = in.readLine();
+				entries = line.split("\t");
+
+				final ChromosomeCoverage coverage = genome.get( entries[ 0 ] );
+				extractWindow( entries, coverage == null ? empty : coverage, handler );
+			}
+			in.close();
+		}
+		catch (Exception e)
+		{
+			System.err.println( "Unable to extract values for windows specified in input.BED." );
+			System.exit( 1 );
+		}
+	}
+
+	/**
+	 * Extract the windows of BED entries that have already been parsed, e.g. to extract the same windows from several coverage files.
+	 * @param windows tab separated fields of the BED entries
+	 * @param genome
+	 * @param handler
+	 */
+	public void extractWindows( final ArrayList<String[]> windows, final HashMap<String, ChromosomeCoverage> genome, final WindowHandler handler )
+	{
+		final ChromosomeCoverage empty = createCoverage();
+		empty.finish();
+
+		for( final String[] entries : windows )
+		{
+			final ChromosomeCoverage coverage = genome.get( entries[ 0 ] );
+			extractWindow( entries, coverage == null ? empty : coverage, handler );
+		}
+	}
+
+	/**
+	 * Parse all entries of a BED file.
+	 * @param inputBED
+	 * @return tab separated fields of every entry
+	 */
+	public ArrayList<String[]> readBED( final String inputBED )
+	{
+		final ArrayList<String[]> windows = new ArrayList<String[]>();
+		BufferedReader in = TextFileAccess.openFileRead( inputBED );
+		try
+		{
+			while( in.ready() )
+				windows.add( in.readLine().split("\t") );
+			in.close();
+		}
+		catch (Exception e)
+		{
+			System.err.println( "Unable to read the windows specified in input.BED." );
+			System.exit( 1 );
+		}
+		return windows;
+	}
+
+	/**
+	 * Extract the windows of all BED entries on chromosome chr.
+	 * @param inputBED
+	 * @param coverage
+	 * @param chr
+	 * @param handler
+	 */
+	public void extractChromosomeWindows( final String inputBED, final ChromosomeCoverage coverage, final String chr, final WindowHandler handler )
+	{
+		BufferedReader in = TextFileAccess.openFileRead( inputBED );
+		try
+		{
+			String line;
+			String[] entries;
+			while( in.ready() )
+			{
+				line = in.readLine();
+				entries = line.split("\t");
+
+				if( entries[ 0 ].equals( chr ) )
+					extractWindow( entries, coverage, handler );
+			}
+			in.close();
+		}
+		catch (Exception e)
+		{
+			System.err.println( "Unable to extract values for windows specified in input.BED." );
+			System.exit( 1 );
+		}
+	}
+
+	/**
+	 * Extract the window of a BED entry, or only its summary if the handler is a SummaryHandler.
+	 * @param entries
+	 * @param coverage
+	 * @param handler
+	 */
+	public void extractWindow( final String[] entries, final ChromosomeCoverage coverage, final WindowHandler handler )
+	{
+		if( handler instanceof SummaryHandler )
+			coverage.extractSummary( entries, Integer.parseInt( entries[ 1 ] ), Integer.parseInt( entries[ 2 ] ), (SummaryHandler) handler );
+		else
+			coverage.extractWindow( entries, Integer.parseInt( entries[ 1 ] ), Integer.parseInt( entries[ 2 ] ), entries[ 5 ].equals("+"), handler );
+	}
+
+	/**
+	 * Hash and extract one chromosome after the other.
+	 * @param inputCoverage
+	 * @param inputBED
+	 * @param handler
+	 */
+	public void processChromosomes( final String inputCoverage, final String inputBED, final WindowHandler handler )
+	{
+		PrintWriter logOut = TextFileAccess.openFileWrite( "pileupWindowLOG_" + CalenderStuff.now( CalenderStuff.DATE_Time ) + ".log");
+		logOut.println( "Pileup file : " + inputCoverage + " of format " + inputFormat);
+		logOut.println( "Window BEDFile : " + inputBED + "\n");
+
+		for( String chr : getChromosomesInBED( inputBED ) )
+		{
+			logOut.print( "Chromosome " + chr + " - Creating chromosome Hash from pileupFile\t" );
+			logOut.flush();
+
+			ChromosomeCoverage coverage = loadChromosome( inputCoverage, chr );
+
+			logOut.print( "Done. " + coverage.size() + " entries." + "\n" );
+			logOut.print( "Chromosome " + chr + " - Creating value windows from Window BEDFile\t" );
+			logOut.flush();
+
+			extractChromosomeWindows( inputBED, coverage, chr, handler );
+			coverage = null;
+
+			logOut.print( "Done." + "\n" );
+			logOut.flush();
+		}
+		logOut.close();
+	}
+
+	/**
+	 * Process chromosomes independently on a pool of threads. Both files are read only once: the BED entries are split by chromosome,
+	 * the coverage lines are handed from this thread to the task of their chromosome through a queue of LINE_BATCH lines per entry.
+	 * The coverage file therefore has to list every chromosome in one block. Each chromosome is passed to its own partial handler,
+	 * partials are merged in chromosome order. Only as many chromosomes as threads are held in memory at once.
+	 * @param inputCoverage
+	 * @param inputBED
+	 * @param threads
+	 * @param handler
+	 */
+	public void processChromosomesParallel( final String inputCoverage, final String inputBED, final int threads, final WindowHandler handler )
+	{
+		PrintWriter logOut = TextFileAccess.openFileWrite( "pileupWindowLOG_" + CalenderStuff.now( CalenderStuff.DATE_Time ) + ".log");
+		logOut.println( "Pileup file : " + inputCoverage + " of format " + inputFormat);
+		logOut.println( "Window BEDFile : " + inputBED );
+		logOut.println( "Threads : " + threads + "\n");
+		logOut.flush();
+
+		//Split the BED entries by chromosome
+		final ArrayList<String> chromosomes = new ArrayList<String>();
+		final HashMap<String, ArrayList<String[]>> windows = new HashMap<String, ArrayList<String[]>>();
+		for( final String[] entries : readBED( inputBED ) )
+		{
+			ArrayList<String[]> chrWindows = windows.get( entries[ 0 ] );
+			if( chrWindows == null )
+			{
+				chrWindows = new ArrayList<String[]>();
+				windows.put( entries[ 0 ], chrWindows );
+				chromosomes.add( entries[ 0 ] );
+			}
+			chrWindows.add( entries );
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool( threads );
+		final HashMap<String, Future<WindowHandler>> partials = new HashMap<String, Future<WindowHandler>>();
+
+		BufferedReader in = TextFileAccess.openFileRead( inputCoverage );
+		String line = "No line parsed";
+		try
+		{
+			String chr = null;
+			ArrayBlockingQueue<ArrayList<String>> queue = null;
+			ArrayList<String> batch = null;
+			while( in.ready() )
+			{
+				line = in.readLine();
+				final int tab = line.indexOf( '\t' );
+				final String lineChr = tab == -1 ? line : line.substring( 0, tab );
+
+				if( !lineChr.equals( chr ) )
+				{
+					if( queue != null )
+					{
+						queue.put( batch );
+						queue.put( LAST_BATCH );
+					}
+					queue = null;
+					chr = lineChr;
+
+					if( partials.containsKey( chr ) )
+					{
+						System.err.println( "Parallel perChromosome processing requires a coverage file listing each chromosome in one block. Please sort it or use -threads=1. " + chr + " appears again at: " + line );
+						System.exit( 1 );
+					}
+
+					//Lines of chromosomes without windows are skipped
+					if( windows.containsKey( chr ) )
+					{
+						queue = new ArrayBlockingQueue<ArrayList<String>>( QUEUE_BATCHES );
+						batch = new ArrayList<String>( LINE_BATCH );
+						partials.put( chr, executor.submit( createChromosomeTask( queue, windows.get( chr ), handler ) ) );
+					}
+				}
+
+				if( queue != null )
+				{
+					batch.add( line );
+					if( batch.size() == LINE_BATCH )
+					{
+						queue.put( batch );
+						batch = new ArrayList<String>( LINE_BATCH );
+					}
+				}
+			}
+			if( queue != null )
+			{
+				queue.put( batch );
+				queue.put( LAST_BATCH );
+			}
+			in.close();
+		}
+		catch (Exception e)
+		{
+			System.err.println( "Unable to read values specified in input.bedgraph/pileup. Current line: " + line );
+			System.exit( 1 );
+		}
+
+		//Chromosomes without coverage result in empty windows
+		for( final String chr : chromosomes )
+		{
+			if( !partials.containsKey( chr ) )
+			{
+				final ArrayBlockingQueue<ArrayList<String>> queue = new ArrayBlockingQueue<ArrayList<String>>( 1 );
+				queue.add( LAST_BATCH );
+				partials.put( chr, executor.submit( createChromosomeTask( queue, windows.get( chr ), handler ) ) );
+			}
+		}
+
+		//Merge in chromosome order
+		try
+		{
+			for( final String chr : chromosomes )
+			{
+				final WindowHandler partial = partials.get( chr ).get();
+				if( partial != handler )
+					handler.merge( partial );
+
+				logOut.println( "Chromosome " + chr + " - Done." );
+				logOut.flush();
+			}
+		}
+		catch (Exception e)
+		{
+			System.err.println( "Unable to process chromosomes in parallel. " + e );
+			System.exit( 1 );
+		}
+		executor.shutdown();
+		logOut.close();
+	}
+
+	/**
+	 * Task hashing the coverage lines of one chromosome as they arrive and extracting its windows after the last line.
+	 * @param lines batches of coverage lines, terminated by LAST_BATCH
+	 * @param chrWindows BED entries of the chromosome
+	 * @param handler
+	 * @return
+	 */
+	protected Callable<WindowHandler> createChromosomeTask( final ArrayBlockingQueue<ArrayList<String>> lines, final ArrayList<String[]> chrWindows, final WindowHandler handler )
+	{
+		return new Callable<WindowHandler>()
+		{
+			@Override
+			public WindowHandler call()
+			{
+				final ChromosomeCoverage coverage = createCoverage();
+				try
+				{
+					ArrayList<String> batch;
+					while( ( batch = lines.take() ) != LAST_BATCH )
+						for( final String line : batch )
+							coverage.add( line.split("\t"), yValuePos );
+				}
+				catch (Exception e)
+				{
+					//The reader waits for this task, so it cannot report the error
+					System.err.println( "Unable to hash values specified in input.bedgraph/pileup. " + e );
+					System.exit( 1 );
+				}
+				coverage.finish();
+
+				final WindowHandler partial = handler.createPartial();
+				for( final String[] entries : chrWindows )
+					extractWindow( entries, coverage, partial );
+				return partial;
+			}
+		};
+	}
+
+	/**
+	 * Extract all windows from a memory mapped binary coverage file (see BedgraphToBinaryCoverage).
+	 * @param inputBinary
+	 * @param inputBED
+	 * @param handler
+	 */
+	public void processBinary( final String inputBinary, final String inputBED, final WindowHandler handler )
+	{
+		BufferedReader in = TextFileAccess.openFileRead( inputBED );
+		try
+		{
+			final BinaryCoverage coverage = new BinaryCoverage( new File( inputBinary ) );
+
+			//Windows scaled to few bins are read from the zoom levels, if they have been built
+			final CoveragePyramid pyramid = handler.getBins() == -1 ? null : CoveragePyramid.open( new File( inputBinary ) );
+
+			String line;
+			while( in.ready() )
+			{
+				line = in.readLine();
+				extractWindow( line.split("\t"), coverage, pyramid, handler );
+			}
+			coverage.close();
+			if( pyramid != null )
+				pyramid.close();
+			in.close();
+		}
+		catch (Exception e)
+		{
+			System.err.println( "Unable to extract values for windows specified in input.BED from the binary coverage file." );
+			System.exit( 1 );
+		}
+	}
+
+	/**
+	 * Extract the window of a BED entry from a binary coverage file.
+	 * @param entries
+	 * @param coverage
+	 * @param pyramid zoom levels of the coverage, may be null
+	 * @param handler
+	 */
+	public void extractWindow( final String[] entries, final BinaryCoverage coverage, final CoveragePyramid pyramid, final WindowHandler handler )
+	{
+		final int start = Integer.parseInt( entries[ 1 ] );
+		final int end = Integer.parseInt( entries[ 2 ] );
+		final boolean plusStrand = entries[ 5 ].equals("+");
+
+		float[] window = pyramid == null ? null : pyramid.getWindow( entries[ 0 ], start, end, plusStrand, handler.getBins() );
+		if( window == null )
+		{
+			window = new float[ end - start ];
+			coverage.fillWindow( entries[ 0 ], start, end, plusStrand, window );
+
+			//Integer coverage (PileupWindow) is passed as int window, as if it had been parsed from text
+			if( !floatValues )
+			{
+				final int[] intWindow = new int[ window.length ];
+				for( int i = 0; i < window.length; i++ )
+					intWindow[ i ] = (int) window[ i ];
+				handler.addWindow( entries, intWindow );
+				return;
+			}
+		}
+
+		handler.addWindow( entries, window );
+	}
+
+	/**
+	 * Extract all windows in a single pass over the coverage and the BED file.
+	 * Both files have to be sorted by position within each chromosome and list their chromosomes in the same order.
+	 * Only the windows overlapping the current coverage entry are filled. Windows are passed to the handler in BED order,
+	 * a closed window waits until all windows listed before it are closed as well.
+	 * @param inputCoverage
+	 * @param inputBED
+	 * @param handler
+	 */
+	public void streamWindows( final String inputCoverage, final String inputBED, final WindowHandler handler )
+	{
+		//Rank chromosomes by their order in the BED file
+		final HashMap<String, Integer> chrRank = new HashMap<String, Integer>();
+		for( String chr : getChromosomesInBED( inputBED ) )
+			chrRank.put( chr, chrRank.size() );
+
+		//Int coverage only uses the start position of an entry, as when hashing
+		final boolean hasEnd = floatValues && yValuePos == 3;
+
+		//Windows still overlapping the coverage, and all windows not yet passed to the handler in BED order
+		final ArrayList<OpenWindow> openWindows = new ArrayList<OpenWindow>();
+		final ArrayDeque<OpenWindow> pendingWindows = new ArrayDeque<OpenWindow>();
+		BufferedReader bedIn = TextFileAccess.openFileRead( inputBED );
+		BufferedReader in = TextFileAccess.openFileRead( inputCoverage );
+		String line = "No line parsed";
+		try
+		{
+			String[] nextEntry = readBEDEntry( bedIn );
+			int nextRank = nextEntry == null ? Integer.MAX_VALUE : chrRank.get( nextEntry[ 0 ] );
+			int nextStart = nextEntry == null ? 0 : Integer.parseInt( nextEntry[ 1 ] );
+
+			int currentRank = -1;
+			int lastPos = -1;
+			String[] entries;
+			while( in.ready() )
+			{
+				line = in.readLine();
+				entries = line.split("\t");
+
+				//Skip chromosomes without windows
+				final Integer rank = chrRank.get( entries[ 0 ] );
+				if( rank == null )
+					continue;
+
+				if( rank < currentRank )
+				{
+					System.err.println( "Streaming requires a coverage file sorted in BED chromosome order. Coverage not sorted in BED chromosome order at entry: " + line );
+					System.exit( 1 );
+				}
+
+				final int pos = Integer.parseInt( entries[ 1 ] );
+				final int end = hasEnd ? Integer.parseInt( entries[ 2 ] ) : pos + 1;
+
+				//New chromosome: close all windows of the last one and pass windows of chromosomes without coverage
+				if( rank > currentRank )
+				{
+					for( OpenWindow w : openWindows )
+						w.closed = true;
+					openWindows.clear();
+					currentRank = rank;
+					lastPos = -1;
+					while( nextRank < currentRank )
+					{
+						final OpenWindow w = new OpenWindow( nextEntry, floatValues );
+						w.closed = true;
+						pendingWindows.add( w );
+						nextEntry = readBEDEntry( bedIn );
+						nextRank = checkStreamOrder( nextEntry, nextRank, nextStart, chrRank );
+						nextStart = nextEntry == null ? 0 : Integer.parseInt( nextEntry[ 1 ] );
+					}
+					passClosedWindows( pendingWindows, handler );
+				}
+
+				if( pos < lastPos )
+				{
+					System.err.println( "Streaming requires a pileup sorted by position. Unsorted entry: " + line );
+					System.exit( 1 );
+				}
+				lastPos = pos;
+
+				//Open all windows starting before the end of the current entry
+				while( nextRank == currentRank && nextStart < end )
+				{
+					final OpenWindow w = new OpenWindow( nextEntry, floatValues );
+					openWindows.add( w );
+					pendingWindows.add( w );
+
+					nextEntry = readBEDEntry( bedIn );
+					nextRank = checkStreamOrder( nextEntry, nextRank, nextStart, chrRank );
+					nextStart = nextEntry == null ? 0 : Integer.parseInt( nextEntry[ 1 ] );
+				}
+
+				//Close windows ending before the current position, add the value to all others
+				final int intValue = floatValues ? 0 : Integer.parseInt( entries[ yValuePos ] );
+				final float floatValue = floatValues ? Float.parseFloat( entries[ yValuePos ] ) : 0f;
+				boolean closedAny = false;
+				for( int i = openWindows.size() - 1; i >= 0; i-- )
+				{
+					final OpenWindow w = openWindows.get( i );
+					if( w.end <= pos )
+					{
+						w.closed = true;
+						closedAny = true;
+						openWindows.set( i, openWindows.get( openWindows.size() - 1 ) );
+						openWindows.remove( openWindows.size() - 1 );
+					}
+					else if( floatValues )
+					{
+						//As when hashing, zero values do not replace earlier values
+						if( floatValue != 0f )
+							w.set( Math.max( pos, w.start ), Math.min( end, w.end ), floatValue );
+					}
+					else
+					{
+						w.set( pos, intValue );
+					}
+				}
+				if( closedAny )
+					passClosedWindows( pendingWindows, handler );
+			}
+
+			//Windows behind the last coverage entry remain empty
+			for( OpenWindow w : pendingWindows )
+				w.close( handler );
+			while( nextEntry != null )
+			{
+				new OpenWindow( nextEntry, floatValues ).close( handler );
+				nextEntry = readBEDEntry( bedIn );
+				nextRank = checkStreamOrder( nextEntry, nextRank, nextStart, chrRank );
+				nextStart = nextEntry == null ? 0 : Integer.parseInt( nextEntry[ 1 ] );
+			}
+
+			in.close();
+			bedIn.close();
+		}
+		catch (Exception e)
+		{
+			System.err.println( "Unable to stream values specified in input.bedgraph/pileup. Current line: " + line );
+			System.exit( 1 );
+		}
+	}
+
+	/**
+	 * Pass the closed windows at the head of pendingWindows to the handler, stop at the first window that is still open.
+	 * @param pendingWindows
+	 * @param handler
+	 */
+	protected void passClosedWindows( final ArrayDeque<OpenWindow> pendingWindows, final WindowHandler handler )
+	{
+		while( !pendingWindows.isEmpty() && pendingWindows.peekFirst().closed )
+			pendingWindows.pollFirst().close( handler );
+	}
+
+	/**
+	 * Read the next entry of the BED file, null if the end of the file is reached.
+	 * @param bedIn
+	 * @return
+	 * @throws IOException
+	 */
+	public String[] readBEDEntry( final BufferedReader bedIn ) throws IOException
+	{
+		if( bedIn.ready() )
+			return bedIn.readLine().split("\t");
+		else
+			return null;
+	}
+
+	/**
+	 * Return the chromosome rank of the next BED entry. Exit if the BED file is not sorted.
+	 * @param nextEntry
+	 * @param lastRank
+	 * @param lastStart
+	 * @param chrRank
+	 * @return
+	 */
+	public int checkStreamOrder( final String[] nextEntry, final int lastRank, final int lastStart, final HashMap<String, Integer> chrRank )
+	{
+		if( nextEntry == null )
+			return Integer.MAX_VALUE;
+
+		final int rank = chrRank.get( nextEntry[ 0 ] );
+		if( rank < lastRank || ( rank == lastRank && Integer.parseInt( nextEntry[ 1 ] ) < lastStart ) )
+		{
+			System.err.println( "Streaming requires a BED file sorted by chromosome and start. Unsorted entry: " + nextEntry[ 3 ] );
+			System.exit( 1 );
+		}
+		return rank;
+	}
+
+	/**
+	 * Window of the BED file overlapping the current coverage entry during streaming
+	 */
+	protected static class OpenWindow
+	{
+		final String[] entry;
+		final int start, end;
+		final boolean plusStrand;
+		final int[] intWindow;
+		final float[] floatWindow;
+		boolean closed = false;
+
+		public OpenWindow( final String[] entry, final boolean floatValues )
+		{
+			this.entry = entry;
+			this.start = Integer.parseInt( entry[ 1 ] );
+			this.end = Integer.parseInt( entry[ 2 ] );
+			this.plusStrand = entry[ 5 ].equals("+");
+			this.intWindow = floatValues ? null : new int[ end - start ];
+			this.floatWindow = floatValues ? new float[ end - start ] : null;
+		}
+
+		public void set( final int pos, final int value )
+		{
+			if( plusStrand )
+				intWindow[ pos - start ] = value;
+			else
+				intWindow[ end - pos - 1 ] = value;
+		}
+
+		/**
+		 * Set the positions [from, to) of the window to value.
+		 */
+		public void set( final int from, final int to, final float value )
+		{
+			for( int pos = from; pos < to; pos++ )
+			{
+				if( plusStrand )
+					floatWindow[ pos - start ] = value;
+				else
+					floatWindow[ end - pos - 1 ] = value;
+			}
+		}
+
+		public void close( final WindowHandler handler )
+		{
+			if( intWindow != null )
+				handler.addWindow( entry, intWindow );
+			else
+				handler.addWindow( entry, floatWindow );
+		}
+	}
+
+	public ArrayList<String> getChromosomesInBED( final String inputBED )
+	{
+		ArrayList<String> chrList = new ArrayList<String>();
+		HashSet<String> chrHash = new HashSet<String>();
+		chrHash.add("");
+
+		BufferedReader in = TextFileAccess.openFileRead( inputBED );
+		try
+		{
+			String line;
+			String[] entries;
+			while( in.ready() )
+			{
+				line = in.readLine();
+
+				entries = line.split("\t");
+				if( !chrHash.contains( entries[ 0 ] ) )
+				{
+					chrList.add( entries[ 0 ] );
+					chrHash.add( entries[ 0 ] );
+				}
+			}
+			in.close();
+		}
+		catch (Exception e)
+		{
+			System.err.println( "Unable to extract chromosomes specified in input.BED." );
+			System.exit( 1 );
+		}
+
+		return chrList;
+	}
+}
@@ -1,11 +1,6 @@
 package bedgraphTools;
 
-
-import inputOutput.TextFileAccess;
-
-import java.io.BufferedReader;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.io.File;
 
 public class DecompressBedgraph 
 { 	
@@ -14,104 +9,42 @@ public class DecompressBedgraph
 	/**
 	 * Construct a DecompressBedgraph class. Define the bedgraph file. 
 	 * @param bedgraph
+	 * @param binaryOutput write a binary coverage file (one float array per chromosome) instead of text, null for text
 	 */
-	public DecompressBedgraph( final String bedgraph )
+	public DecompressBedgraph( final String bedgraph, final File binaryOutput )
 	{   
-		decompressBedgraph( bedgraph );
+		decompressBedgraph( bedgraph, binaryOutput );
 	}
 	
-	public void decompressBedgraph( final String bedgraph )
+	/**
+	 * Expand every entry into one line per position and fill the space between neighbours with FILL_EMPTY_POS_VALUE (ExpandFilter),
+	 * or store the entries as dense float arrays (BinaryCoverageWriter). The runs are written position by position from primitive
+	 * values, no entry objects are created. 
+	 * @param bedgraph
+	 * @param binaryOutput
+	 */
+	public void decompressBedgraph( final String bedgraph, final File binaryOutput )
 	{ 
-	
-		//Open file, define starting parameters for line and lastEntry
-		BufferedReader in = TextFileAccess.openFileRead( bedgraph ); 
-		String line = "Empty first line";
-		BEDgraphEntry lastEntry = new BEDgraphEntry( "empty", 0, 1, 0 );
-		
+		BedgraphLineReader in = null; 
 		try
 		{ 
-			while( in.ready() )
-			{ 
-				line = in.readLine();
-				BEDgraphEntry entry = new BEDgraphEntry( line ); 
-				//Decompress the current entry. 
-				lastEntry = processEntry( lastEntry, entry ); 
-			} 
+			final BedgraphSink out; 
+			if( binaryOutput == null )
+				out = new ExpandFilter( new BedgraphPrinter() ); 
+			else
+				out = new BinaryCoverageWriter( binaryOutput ); 
+			
+			in = new BedgraphLineReader( bedgraph ); 
+			in.writeTo( out ); 
+			in.close(); 
 		}
 		catch (Exception e) 
 		{
-			System.err.println( "Cannot process the bedgraph entry: ." + line );
+			System.err.println( "Cannot process the bedgraph entry: ." + ( in == null ? e : in.getLine() ) );
 			System.exit( 1 ); 
 		} 
 	}
 	
-	/**
-	 * Decompress the current entry. The distance between the current and last entry will be filled
-	 * with the value stored in FILL_EMPTY_POS_VALUE.  
-	 * @param lastEntry
-	 * @param line
-	 * @return
-	 */
-	public BEDgraphEntry processEntry( BEDgraphEntry lastEntry, final BEDgraphEntry entry )
-	{
-		//Check if both entries are on the same chromosome, but are separated by 'empty' positions. 
-		if( lastEntry.getChrom().equals( entry.getChrom() ) ) 
-			fillSpaceBetweenNeighbours( lastEntry, entry ); 
-		
-		//Decompress the last entry (i.e. undo run length encoding). 
-		lastEntry = decompress( lastEntry, entry ); 
-		
-		return lastEntry; 
-	}
-	
-	/**
-	 * Fill space between two neighbors with FILL_EMPTY_POS_VALUE
-	 * @param lastEntry
-	 * @param entry
-	 */
-	public void fillSpaceBetweenNeighbours( final BEDgraphEntry lastEntry, final BEDgraphEntry entry )
-	{ 
-		//Check if space between two neighbors. If so, fill with FILL_EMPTY_POS_VALUE
-		if( lastEntry.getChromEnd() != entry.getChromStart() )
-		{
-			int newStart = lastEntry.getChromEnd(); 
-			while( newStart != entry.getChromStart() )
-			{
-				System.out.println( new BEDgraphEntry( entry.getChrom(), newStart, ( newStart + 1 ), FILL_EMPTY_POS_VALUE ) ); 
-				newStart++; 
-			}
-		}
-	}
-	
-	/**
-	 * Undo run length encoding. I.e. represent each bedgraph entry as a list of bedgraph entries for each position.    
-	 * @param lastEntry
-	 * @param entry
-	 * @return
-	 */
-	public BEDgraphEntry decompress( BEDgraphEntry lastEntry, final BEDgraphEntry entry )
-	{
-		if( entry.getPositionSpanning() == 1 )
-		{
-			System.out.println( entry ); 
-			lastEntry = entry; 
-		}
-		else
-		{
-			ArrayList<BEDgraphEntry> expandedEntries = entry.expandPositions();
-			Iterator<BEDgraphEntry> i = expandedEntries.iterator();  
-			int index = -1; 
-			while( i.hasNext() )
-			{
-				index++; 
-				System.out.println( i.next() );
-			}
-			lastEntry = expandedEntries.get( index );
-		}
-		
-		return lastEntry; 
-	}
-	
 	/*
 	public void printOutOfBoundaryValues( final ArrayList<BEDgraphEntry> values )
 	{
@@ -148,21 +81,24 @@ public class DecompressBedgraph
 	 */
 	public static void main(String[] args) 
 	{
-		if( args.length != 1 )
+		if( args.length < 1 || args.length > 2 || ( args.length == 2 && !args[ 0 ].startsWith( "-binary=" ) ) )
 		{
 			final String info = "\n#######################\n" + 
-					"java -jar decompressBedgraph bedgraphFile\n" +
+					"java -jar decompressBedgraph [-binary=output.bcov] bedgraphFile\n" +
 					"#######################\n" + 
 					"This tool decompresses bedgraphs.\n" +
 					"Expands bedgraph entries spanning more than one positions and fills up empty positions\n" +
 					"Outputs the decompressed bedgraph to STDOUT.\n" +
+					"Optional: write a binary coverage file instead (-binary=output.bcov), one float array per chromosome from position 0 on.\n" +
+					"Empty positions are 0 there. The file is read by the windowing tools with -input=binary.\n" +
 					"\n\n"; 
 			System.err.println( info ); 
 		}
 		else 
 		{	
 					
-			new DecompressBedgraph( args[ 0 ] );
+			final File binaryOutput = args.length == 2 ? new File( args[ 0 ].substring( args[ 0 ].indexOf("=") + 1 ) ) : null; 
+			new DecompressBedgraph( args[ args.length - 1 ], binaryOutput );
 			
 		}		
 	}
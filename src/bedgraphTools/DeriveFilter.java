@@ -0,0 +1,149 @@
+package bedgraphTools;
+
+import java.io.IOException;
+
+import outputTools.OutputWriter;
+
+/**
+ * First derivative (central difference) of a decompressed bedgraph on the fly, as DeriveBedgraph computes it.
+ * Only the previous, current and next entry of a chromosome are kept, so the memory does not grow with the chromosome length.
+ *
+ * The first and last entry of each chromosome get the derivative 0. Missing neighbours (gaps in the positions) count as score 0,
+ * positions without any neighbour get the derivative 0.
+ *
+ * Scores and derivatives are kept in double precision. Printed to an OutputWriter (DeriveBedgraph) the derivatives are written
+ * as doubles, passed to a following sink (derive operator of BedgraphPipeline) they are rounded to float like all filter scores.
+ */
+public class DeriveFilter implements BedgraphSink
+{
+	//Either the following sink or the writer printing the derivatives
+	protected final BedgraphSink out;
+	protected final OutputWriter printer;
+
+	//Last three entries of the current chromosome, logical index j (0 = oldest) is stored at ( head + j ) % 3
+	protected final int[] starts = new int[ 3 ], ends = new int[ 3 ];
+	protected final double[] scores = new double[ 3 ];
+	protected int head = 0, count = 0;
+	protected String chrId = null;
+
+	/**
+	 * Pass the derivatives as float scores to out
+	 * @param out
+	 */
+	public DeriveFilter( final BedgraphSink out )
+	{
+		this.out = out;
+		this.printer = null;
+	}
+
+	/**
+	 * Print the derivatives as double values
+	 * @param printer
+	 */
+	public DeriveFilter( final OutputWriter printer )
+	{
+		this.out = null;
+		this.printer = printer;
+	}
+
+	@Override
+	public void write( final String chrom, final int start, final int end, final float score ) throws IOException
+	{
+		write( chrom, start, end, (double) score );
+	}
+
+	public void write( final String chrom, final int start, final int end, final double score ) throws IOException
+	{
+		if( end - start != 1 )
+		{
+			System.err.println( "This bedgraph seems to be compressed. Please use only uncompressed bedgraphs." );
+			return;
+		}
+
+		if( chrId != null && !chrom.equals( chrId ) )
+			endOfChromosome();
+		chrId = chrom;
+
+		final int p;
+		if( count == 3 )
+		{
+			p = head;
+			head = head == 2 ? 0 : head + 1;
+		}
+		else
+		{
+			p = index( count );
+			count++;
+		}
+		starts[ p ] = start;
+		ends[ p ] = end;
+		scores[ p ] = score;
+
+		//Boundary condition: derivative 0 for those which cannot be calculated
+		if( count == 1 )
+			writeDerivative( start, end, 0 );
+		else if( count == 3 )
+			deriveMiddle();
+	}
+
+	/**
+	 * Write the derivative of the middle entry of the full buffer.
+	 * @throws IOException
+	 */
+	protected void deriveMiddle() throws IOException
+	{
+		final int leading = index( 0 ), middle = index( 1 ), tailing = index( 2 );
+
+		//A missing neighbour counts as score 0
+		final double derivative;
+		if( starts[ tailing ] - starts[ leading ] == 2 )
+			derivative = ( scores[ tailing ] - scores[ leading ] ) / 2.0;
+		else if( starts[ middle ] - starts[ leading ] == 1 )
+			derivative = ( 0 - scores[ leading ] ) / 2.0;
+		else if( starts[ tailing ] - starts[ middle ] == 1 )
+			derivative = ( scores[ tailing ] - 0 ) / 2.0;
+		else
+			derivative = 0;
+
+		writeDerivative( starts[ middle ], ends[ middle ], derivative );
+	}
+
+	protected void writeDerivative( final int start, final int end, final double derivative ) throws IOException
+	{
+		if( printer != null )
+			printer.print( chrId ).tab().print( start ).tab().print( end ).tab().print( derivative ).println();
+		else
+			out.write( chrId, start, end, (float) derivative );
+	}
+
+	protected int index( final int j )
+	{
+		final int p = head + j;
+		return p < 3 ? p : p - 3;
+	}
+
+	/**
+	 * Write the last entry of the current chromosome with derivative 0 and empty the buffer.
+	 * @throws IOException
+	 */
+	protected void endOfChromosome() throws IOException
+	{
+		if( count > 0 )
+		{
+			final int p = index( count - 1 );
+			writeDerivative( starts[ p ], ends[ p ], 0 );
+		}
+		head = 0;
+		count = 0;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		endOfChromosome();
+		if( printer != null )
+			printer.close();
+		else
+			out.close();
+	}
+}
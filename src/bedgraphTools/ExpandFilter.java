@@ -0,0 +1,42 @@
+package bedgraphTools;
+
+import java.io.IOException;
+
+/**
+ * Expands run length encoded bedgraph entries into one entry per position, as DecompressBedgraph does,
+ * and passes them to the next sink (e.g. a BlurFilter) instead of printing them.
+ * Positions between two entries of the same chromosome are filled with DecompressBedgraph.FILL_EMPTY_POS_VALUE.
+ */
+public class ExpandFilter implements BedgraphSink
+{
+	protected final BedgraphSink out;
+	protected String lastChrom = null;
+	protected int lastEnd = 0;
+
+	public ExpandFilter( final BedgraphSink out )
+	{
+		this.out = out;
+	}
+
+	@Override
+	public void write( final String chrom, final int start, final int end, final float score ) throws IOException
+	{
+		if( chrom.equals( lastChrom ) )
+		{
+			for( int pos = lastEnd; pos < start; pos++ )
+				out.write( chrom, pos, pos + 1, DecompressBedgraph.FILL_EMPTY_POS_VALUE );
+		}
+
+		for( int pos = start; pos < end; pos++ )
+			out.write( chrom, pos, pos + 1, score );
+
+		lastChrom = chrom;
+		lastEnd = end;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		out.close();
+	}
+}
@@ -1,316 +1,130 @@
 package bedgraphTools;
 
-import inputOutput.CalenderStuff;
-import inputOutput.TextFileAccess;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
-import java.io.BufferedReader;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import outputTools.OutputWriter;
 
-public class ExtractSubBedGraphs {
+public class ExtractSubBedGraphs implements WindowHandler {
 
 	public String inputFormat, outputPath; 
 	public int bins;
 	
-	public HashMap<String, HashMap<Integer, Float>> pileupHash; 
+	//Writes the windows to the archive or to one file per window, off the extracting thread
+	protected final SubBedgraphWriter writer; 
 	
 	public ExtractSubBedGraphs( final String inputFormat, final String outputPath, final String processing, final String inputPileup, final String inputBED )
+	{
+		this( inputFormat, outputPath, null, 1, processing, inputPileup, inputBED ); 
+	}
+	
+	/**
+	 * @param inputFormat
+	 * @param outputPath directory of the per window files, ignored if archive is given
+	 * @param archive file all windows are appended to, null for one file per window
+	 * @param writers number of threads writing the per window files
+	 * @param processing
+	 * @param inputPileup
+	 * @param inputBED
+	 */
+	public ExtractSubBedGraphs( final String inputFormat, final String outputPath, final String archive, final int writers, final String processing, final String inputPileup, final String inputBED )
 	{
 		this.inputFormat = inputFormat; 
 		this.outputPath = outputPath;
+		this.writer = archive == null ? new SubBedgraphFileWriterPool( outputPath, writers ) : openArchive( archive ); 
 		
-		//Check if all chromosomes should be processed simultaneously 
-		if( processing.equals("genome") ) 	 
-		{
-			fillPileupHash( inputPileup, inputFormat ); 
-			createWindowList( inputBED ); 		
-		}
-		//Or if processing should take place on a chromosome by chromosome basis 
-		else 
-		{
-			//Initiate a log file writer
-			PrintWriter logOut = TextFileAccess.openFileWrite( "pileuUpWindowLOG_" + CalenderStuff.now( CalenderStuff.DATE_Time ) + ".log");
-			logOut.println( "Pileup file : " + inputPileup + " of format " + inputFormat);
-			logOut.println( "Window BEDFile : " + inputBED + "\n");
-			
-			//Initiate a hashmap for each chromosome 
-			HashMap<Integer, Float> chrHash = new HashMap<Integer, Float>(); 
-			
-			//Go chromosome by chromosome
-			for( String chr : getChromosomesInBED( inputBED ) )
-			{	
-				logOut.print( "Chromosome " + chr + " - Creating chromosome Hash from pileupFile\t" );
-				logOut.flush();
-				
-				//Add values to chromosome hash
-				chrHash = fillChromosomePileupHash( inputPileup, inputFormat, chr );
-				
-				logOut.print( "Done. " + chrHash.values().size() + " entries." + "\n" ); 
-				logOut.print( "Chromosome " + chr + " - Creating value windows from Window BEDFile\t" );
-				logOut.flush(); 
-				
-				addChromosomeWindowsToList( inputBED, chrHash, chr ); 
-				
-				chrHash = null; 
-				System.gc();  
-				
-			}
-			logOut.close(); 
-		}
+		//Every window is queued for writing as soon as it is extracted
+		new CoverageWindowEngine( inputFormat, true ).process( processing, 1, inputPileup, inputBED, this ); 
+		writer.close(); 
 		
 		System.exit( 0 );
 	}
 	
-	public void addChromosomeWindowsToList( final String inputBED, final HashMap<Integer, Float> chrHash, final String chr )
+	protected static SubBedgraphArchiveWriter openArchive( final String archive )
 	{
-		BufferedReader in = TextFileAccess.openFileRead( inputBED ); 
 		try
 		{
-			String line; 
-			String[] entries;
-			while( in.ready() )
-			{
-				line = in.readLine(); 
-				entries = line.split("\t"); 
-				
-				if( entries[ 0 ].equals( chr ) )
-					writeWindowEntry( entries, chrHash ); 
-			}
+			return new SubBedgraphArchiveWriter( archive ); 
 		}
-		catch (Exception e) 
+		catch (IOException e) 
 		{
-			System.err.println( "Unable to extract values for windows specified in input.BED." );
+			System.err.println( "Cannot create the archive " + archive + ": " + e ); 
 			System.exit( 1 ); 
-		} 
+			return null; 
+		}
 	}
 	
-	public HashMap<Integer, Float> fillChromosomePileupHash( final String inputPileup, final String inputFormat, final String chrId )
+	@Override
+	public void addWindow( final String[] entry, final float[] window )
 	{
-		HashMap<Integer, Float> chrHash = new HashMap<Integer, Float>(); 
-		
-		int yValuePos = -1; 
-		if( inputFormat.equals("bedgraph") || inputFormat.equals("pileup") )
-			yValuePos = 3;
-		else if( inputFormat.equals("coverage") )
-			yValuePos = 2; 
-		
-		BufferedReader in = TextFileAccess.openFileRead( inputPileup ); 
-		try
-		{
-			String line; 
-			String[] entries; 
-			int start; 
-			int end; 
-			float value;
-			while( in.ready() )
-			{
-				line = in.readLine(); 
-				entries = line.split("\t");   
-				
-				if( entries[ 0 ].equals( chrId ) )
-				{
-					start = Integer.parseInt( entries[ 1 ]); 
-					end = Integer.parseInt( entries[ 2 ] ); 
-					value = Float.parseFloat( entries[ yValuePos ] );
-					
-					if( value != 0f )
-					{ 
-						while( start < end )
-						{
-							chrHash.put( start, value ); 
-							start++; 
-						}
-					}
-					
-					//chrHash.put( Integer.parseInt( entries[ 1 ]), Float.parseFloat( entries[ yValuePos ] ) ); 
-				}   
-			}
-		}
-		catch (Exception e) 
-		{
-			System.err.println( "Unable to hash values specified in input.bedgraph/pileup." );
-			System.exit( 1 ); 
-		} 
-		
-		return chrHash; 
+		writeWindow( entry, window ); 
 	}
 	
-	public ArrayList<String> getChromosomesInBED( final String inputBED )
+	@Override
+	public void addWindow( final String[] entry, final int[] window )
 	{
-		ArrayList<String> chrList = new ArrayList<String>(); 
-		HashSet<String> chrHash = new HashSet<String>();
-		chrHash.add(""); 
-		
-		BufferedReader in = TextFileAccess.openFileRead( inputBED ); 
-		try
-		{
-			String line; 
-			String[] entries;
-			while( in.ready() )
-			{
-				line = in.readLine(); 
-				 
-				entries = line.split("\t"); 
-				if( !chrHash.contains( entries[ 0 ] ) )
-				{
-					chrList.add( entries[ 0 ] ); 
-					chrHash.add( entries[ 0 ] ); 
-				} 
-			}
-		}
-		catch (Exception e) 
-		{
-			System.err.println( "Unable to extract chromosomes specified in input.BED." );
-			System.exit( 1 ); 
-		} 
+		final float[] floatWindow = new float[ window.length ]; 
+		for( int i = 0; i < window.length; i++ )
+			floatWindow[ i ] = window[ i ]; 
 		
-		return chrList; 
+		writeWindow( entry, floatWindow ); 
 	}
 	
+	/**
+	 * Windows are written position by position.
+	 */
+	@Override
+	public int getBins() { return -1; }
 	
+	/**
+	 * Windows are written to independent files, so a single writer serves all threads.
+	 */
+	@Override
+	public WindowHandler createPartial() { return this; }
 	
+	@Override
+	public void merge( final WindowHandler partial ) {}
 	
-	
-	public void createWindowList( final String inputBED )
+	/**
+	 * Queue the window of a BED entry for outputPath/name.bedgraph or the archive.
+	 * @param entries
+	 * @param window
+	 */
+	public void writeWindow( final String[] entries, final float[] window )
 	{
-		 
-		
-		
-		BufferedReader in = TextFileAccess.openFileRead( inputBED ); 
-		try
-		{
-			String line; 
-			String[] entries;
-			while( in.ready() )
-			{
-				line = in.readLine(); 
-				entries = line.split("\t"); 
-				writeWindowEntry( entries, pileupHash.get( entries[ 0 ] ) ); 
-			}
-		}
-		catch (Exception e) 
-		{
-			System.err.println( "Unable to extract values for windows specified in input.BED." );
-			System.exit( 1 ); 
-		} 
-		 
+		writer.add( entries, window ); 
 	}
 	
-	public void writeWindowEntry( final String[] entries, final HashMap<Integer, Float> chrHash )
+	/**
+	 * Write the window of a BED entry to outputPath/name.bedgraph
+	 * @param outputPath
+	 * @param entries
+	 * @param window
+	 * @throws IOException
+	 */
+	public static void writeWindowFile( final String outputPath, final String[] entries, final float[] window ) throws IOException
 	{
-		PrintWriter out = TextFileAccess.openFileWrite( outputPath + "/" + entries[ 3 ] + ".bedgraph"); 
-		
-		final String chrId = entries[ 0 ];
-		final int start = Integer.parseInt( entries[ 1 ] ); 
-		final int end = Integer.parseInt( entries[ 2 ] );
-		
-		final String header = "track name=" + chrId + "," + start + "," + end;
-		out.println( header ); 
-		
-		final int winSize = end - start;
-		final float[] window = new float[ winSize ];  
-		
-		if( entries[ 5 ].equals("+") )
-		{
-			for( int i = start; i < end; i++)
-			{
-				if( chrHash.containsKey( i ) )
-				{
-					window[ i - start ] = chrHash.get( i ); 
-				}
-				else 
-					window[ i - start ] = 0; 
-			}
-		}
-		else
-		{
-			 for( int i = end - 1; i > start - 1; i-- )
-			 { 
-				 if( chrHash.containsKey( i ) )
-				 {
-					 //System.out.print( window.length + ":" + ( end - i - 1 ) + ":" + i + ", " ); 
-					 window[ ( end - i - 1 ) ] = chrHash.get( i ); 
-				 }
-				 else 
-				 {
-					 
-					 window[ ( end - i - 1 ) ] = 0; 
-				 }
-			 } 
-		} 
-		
-		for( int i = 0; i < window.length; i++ )
-		{
-			out.println( chrId + "\t" + i + "\t" + ( i + 1 ) + "\t" + window[ i ] ); 
-		}
-		 
+		final OutputWriter out = new OutputWriter( new FileOutputStream( outputPath + "/" + entries[ 3 ] + ".bedgraph" ) ); 
+		writeWindow( out, entries, window ); 
 		out.close(); 
 	}
 	
 	/**
-	 * Fill HashMap with coverage values sorted by chromosome ids. 
-	 * @param inputPileup
-	 * @param inputFormat
+	 * Print the window of a BED entry as sub bedgraph: a track line followed by one line per position.
+	 * @param out
+	 * @param entries
+	 * @param window
+	 * @throws IOException
 	 */
-	public void fillPileupHash( final String inputPileup, final String inputFormat )
+	public static void writeWindow( final OutputWriter out, final String[] entries, final float[] window ) throws IOException
 	{
-		//Generate chromosome hashmap
-		HashMap<String, HashMap<Integer, Float>> pileupHash = new HashMap<String, HashMap<Integer,Float>>(); 
-		
-		//Define which position of the entry string holds the coverage value
-		int yValuePos = -1; 
-		if( inputFormat.equals("bedgraph") || inputFormat.equals("pileup") )
-			yValuePos = 3;
-		else if( inputFormat.equals("coverage") )
-			yValuePos = 2; 
+		final String chrId = entries[ 0 ];
+		out.print( "track name=" ).print( chrId ).print( ',' ).print( entries[ 1 ] ).print( ',' ).println( entries[ 2 ] ); 
 		
-		//Read input bedgraph/pileup
-		BufferedReader in = TextFileAccess.openFileRead( inputPileup ); 
-		try
+		for( int i = 0; i < window.length; i++ )
 		{
-			String line; 
-			String[] entries; 
-			int start; 
-			int end;
-			float value; 
-			
-			while( in.ready() )
-			{
-				line = in.readLine(); 
-				entries = line.split("\t"); 
-				
-				
-				
-				if( !pileupHash.containsKey( entries[ 0 ] ) )
-				{
-					pileupHash.put( entries[ 0 ], new HashMap<Integer, Float>() ); 
-				}
-				
-				
-				start = Integer.parseInt( entries[ 1 ] );
-				end = Integer.parseInt( entries[ 2 ] ); 
-				value = Float.parseFloat( entries[ yValuePos ] ); 
-				
-				if( value != 0f )
-				{
-					//System.out.println("Value unequal zero " + start + ":" + end ); 
-					while( start < end )
-					{ 
-						pileupHash.get( entries[ 0 ] ).put( start, value ); 
-						start++; 
-					}					
-				} 
-			}
+			out.print( chrId ).tab().print( i ).tab().print( i + 1 ).tab().print( window[ i ] ).println(); 
 		}
-		catch (Exception e) 
-		{
-			System.err.println( "Unable to hash values specified in input.bedgraph/pileup." );
-			System.exit( 1 ); 
-		} 
-		
-		this.pileupHash = pileupHash; 
 	}
 	
 	/**
@@ -319,14 +133,17 @@ public class ExtractSubBedGraphs {
 	 */
 	public static void main(String[] args) 
 	{
-		if( args.length != 5 )
+		if( args.length != 5 && args.length != 6 )
 		{
 			final String info = "\n#######################\n" +
-					"java -jar extractSubBedGraphs -input=[bedgraph,pileup,coverage] -outputPath=[x] -processing=[genome,perChromosome] input.bedgraph/pileup input.BED\n" +
+					"java -jar extractSubBedGraphs -input=[bedgraph,pileup,coverage,binary] -outputPath=[x] | -archive=[file] -processing=[genome,perChromosome] -writers=N input.bedgraph/pileup input.BED\n" +
 					"#######################\n" + 
 					"Intersects the input bedgraph/pileup (input.bedgraph/pileup) file with a BED file (input.BED) and returns each subregion as a single file to the output directory (-outputPath).\n" +
+					"Instead, all subregions can be appended to a single archive ( -archive=file ), indexed by name in file.index. Print single subregions with bedgraphTools.SubBedgraphArchive file name.\n" +
+					"Single files are written by N threads ( -writers=N , default 1) while the extraction continues. Names of the input.BED entries have to be unique.\n" +
 					"Strandness is taken into account. Thus features on the Minus-Strand are reversed.\n" +
 					"Specify if your input histogram is of bedgraph ( -input=bedgraph ), pileup ( -input=pileup ) or coverage ( -input=genomeCoverage , generated by bedtools) format \n" +
+					"A binary coverage file created by bedgraphToBinaryCoverage ( -input=binary ) is memory mapped instead of parsed. The processing option is ignored in this case.\n" +
 					"Specify if the entire genome should be processed at once ( -processing=genome ) or if it will process chromosomes sequentially ( -processing=perChromosome). This just influences the perfomance NOT the result. For large genomes the perChromosome option is recommended \n" +
 					"#######################\n\n";  
 			System.err.println( info ); 
@@ -334,13 +151,14 @@ public class ExtractSubBedGraphs {
 		else 
 		{
 			final String input = args[ 0 ].substring( args[ 0 ].indexOf("=") + 1);  
-			if( !input.equals("bedgraph") && !input.equals("pileup") && !input.equals("coverage") )
+			if( !input.equals("bedgraph") && !input.equals("pileup") && !input.equals("coverage") && !input.equals("binary") )
 			{
 				System.err.println( "Please specify an output format: Averaged value (avg) or Summed value (sum)" ); 
 				System.exit( 1 ); 
 			}
 			
 			final String outputPath = args[ 1 ].substring( args[ 1 ].indexOf("=") + 1);  
+			final String archive = args[ 1 ].startsWith( "-archive" ) ? outputPath : null; 
 			
 			final String processing = args[ 2 ].substring( args[ 2 ].indexOf("=") + 1 ); 
 			if( !processing.equals("genome") && !processing.equals("perChromosome") )
@@ -349,7 +167,25 @@ public class ExtractSubBedGraphs {
 				System.exit( 1 ); 
 			}
 			
-			new ExtractSubBedGraphs( input, outputPath, processing, args[ args.length - 2 ], args[ args.length - 1] ); 
+			int writers = 1; 
+			if( args.length == 6 )
+			{
+				try 
+				{ 
+					writers = Integer.parseInt( args[ 3 ].substring( args[ 3 ].indexOf("=") + 1 ) ); 
+				}
+				catch (Exception e) 
+				{
+					writers = 0; 
+				}
+				if( writers < 1 || !args[ 3 ].startsWith( "-writers" ) )
+				{
+					System.err.println( "Please provide the number of writers as a positive Integer value ( -writers=N )." ); 
+					System.exit( 1 ); 
+				}
+			}
+			
+			new ExtractSubBedGraphs( input, outputPath, archive, writers, processing, args[ args.length - 2 ], args[ args.length - 1] ); 
 		}
 	}
 
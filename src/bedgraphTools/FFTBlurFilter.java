@@ -0,0 +1,199 @@
+package bedgraphTools;
+
+import java.io.IOException;
+
+/**
+ * BlurFilter convolving blocks of positions by FFT (overlap-save) instead of one kernel pass per position.
+ * The cost per position grows with log( kernel.length ) instead of kernel.length, which pays off for large sigmas
+ * (see BlurBenchmark for the crossover). Chromosome boundaries are handled exactly as by BlurFilter.
+ * The results equal the direct convolution within float precision.
+ */
+public class FFTBlurFilter extends BlurFilter
+{
+	//FFT size and number of positions convolved per block
+	protected final int fftSize, blockSize;
+
+	//Spectrum of the zero padded kernel
+	protected final double[] kernelRe, kernelIm;
+
+	//Input of the current block: blockSize positions to convolve plus kernel.length - 1 flanking positions
+	protected final float[] signal;
+	protected int signalLength = 0;
+	protected final int[] pendingStarts, pendingEnds;
+	protected int pending = 0;
+
+	protected final double[] re, im;
+
+	//Twiddle factors exp( -2 pi i k / fftSize )
+	protected final double[] cos, sin;
+
+	public FFTBlurFilter( final double[] kernel, final BedgraphSink out )
+	{
+		super( kernel, out );
+
+		//Blocks of at least four kernel lengths keep the overlap small
+		int size = 1024;
+		while( size < 4 * kernel.length )
+			size <<= 1;
+		this.fftSize = size;
+		this.blockSize = fftSize - ( kernel.length - 1 );
+
+		this.cos = new double[ fftSize / 2 ];
+		this.sin = new double[ fftSize / 2 ];
+		for( int k = 0; k < fftSize / 2; k++ )
+		{
+			cos[ k ] = Math.cos( 2 * Math.PI * k / fftSize );
+			sin[ k ] = -Math.sin( 2 * Math.PI * k / fftSize );
+		}
+
+		this.kernelRe = new double[ fftSize ];
+		this.kernelIm = new double[ fftSize ];
+		for( int i = 0; i < kernel.length; i++ )
+			kernelRe[ i ] = kernel[ kernel.length - 1 - i ];
+		fft( kernelRe, kernelIm, false );
+
+		this.signal = new float[ fftSize ];
+		this.pendingStarts = new int[ blockSize ];
+		this.pendingEnds = new int[ blockSize ];
+		this.re = new double[ fftSize ];
+		this.im = new double[ fftSize ];
+	}
+
+	/**
+	 * Collect the middle entry instead of convolving it directly. Only the newest score has to be added to the block,
+	 * the others are already part of it.
+	 */
+	@Override
+	protected void writeMiddle( final int middle ) throws IOException
+	{
+		if( signalLength == 0 )
+		{
+			for( int j = 0; j < kernel.length; j++ )
+				signal[ j ] = scores[ index( j ) ];
+			signalLength = kernel.length;
+		}
+		else
+		{
+			signal[ signalLength++ ] = scores[ index( count - 1 ) ];
+		}
+
+		pendingStarts[ pending ] = starts[ middle ];
+		pendingEnds[ pending ] = ends[ middle ];
+		pending++;
+
+		if( signalLength == fftSize )
+			flush();
+	}
+
+	/**
+	 * Convolve and write all pending positions. The last kernel.length - 1 scores are kept for the next block.
+	 * @throws IOException
+	 */
+	protected void flush() throws IOException
+	{
+		if( pending == 0 )
+			return;
+
+		for( int i = 0; i < fftSize; i++ )
+		{
+			re[ i ] = i < signalLength ? signal[ i ] : 0;
+			im[ i ] = 0;
+		}
+		fft( re, im, false );
+		for( int i = 0; i < fftSize; i++ )
+		{
+			final double r = re[ i ] * kernelRe[ i ] - im[ i ] * kernelIm[ i ];
+			im[ i ] = re[ i ] * kernelIm[ i ] + im[ i ] * kernelRe[ i ];
+			re[ i ] = r;
+		}
+		fft( re, im, true );
+
+		//Circular convolution is exact from index kernel.length - 1 on
+		for( int p = 0; p < pending; p++ )
+			out.write( chrId, pendingStarts[ p ], pendingEnds[ p ], (float) re[ p + kernel.length - 1 ] );
+
+		final int overlap = kernel.length - 1;
+		System.arraycopy( signal, signalLength - overlap, signal, 0, overlap );
+		signalLength = overlap;
+		pending = 0;
+	}
+
+	@Override
+	protected void endOfChromosome() throws IOException
+	{
+		flush();
+		super.endOfChromosome();
+	}
+
+	@Override
+	protected void reset()
+	{
+		signalLength = 0;
+		pending = 0;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		flush();
+		super.close();
+	}
+
+	/**
+	 * In place iterative radix-2 FFT of length fftSize. The inverse transform is scaled by 1/n.
+	 * @param re
+	 * @param im
+	 * @param inverse
+	 */
+	public void fft( final double[] re, final double[] im, final boolean inverse )
+	{
+		final int n = fftSize;
+
+		//Bit reversal permutation
+		for( int i = 1, j = 0; i < n; i++ )
+		{
+			int bit = n >> 1;
+			for( ; ( j & bit ) != 0; bit >>= 1 )
+				j ^= bit;
+			j ^= bit;
+
+			if( i < j )
+			{
+				double t = re[ i ]; re[ i ] = re[ j ]; re[ j ] = t;
+				t = im[ i ]; im[ i ] = im[ j ]; im[ j ] = t;
+			}
+		}
+
+		for( int length = 2; length <= n; length <<= 1 )
+		{
+			final int half = length >> 1;
+			final int stride = n / length;
+			for( int k = 0; k < half; k++ )
+			{
+				final double wRe = cos[ k * stride ];
+				final double wIm = inverse ? -sin[ k * stride ] : sin[ k * stride ];
+				for( int i = k; i < n; i += length )
+				{
+					final int j = i + half;
+					final double tRe = re[ j ] * wRe - im[ j ] * wIm;
+					final double tIm = re[ j ] * wIm + im[ j ] * wRe;
+					re[ j ] = re[ i ] - tRe;
+					im[ j ] = im[ i ] - tIm;
+					re[ i ] += tRe;
+					im[ i ] += tIm;
+				}
+			}
+		}
+
+		if( inverse )
+		{
+			for( int i = 0; i < n; i++ )
+			{
+				re[ i ] /= n;
+				im[ i ] /= n;
+			}
+		}
+	}
+
+	public int getBlockSize() { return blockSize; }
+}
@@ -0,0 +1,302 @@
+package bedgraphTools;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Coverage values of a single chromosome stored as compressed runs [start, end) with a float value.
+ * Runs are kept sorted and non overlapping in three primitive arrays, so loading a bedgraph needs time and memory
+ * proportional to its number of lines, not to the number of covered bases. Window queries binary search the first
+ * run overlapping the window.
+ * Positions without a value are reported as 0.
+ */
+public class FloatCoverage extends ChromosomeCoverage
+{
+	protected int[] starts, ends;
+	protected float[] values;
+	protected int size = 0;
+	protected boolean sorted = true;
+
+	//Prefix sum index, sum and number of non zero positions of the first i runs. Built by the first summary.
+	protected double[] cumulativeSums = null;
+	protected long[] cumulativeCovered = null;
+
+	public FloatCoverage()
+	{
+		this( 1024 );
+	}
+
+	public FloatCoverage( final int initialCapacity )
+	{
+		this.starts = new int[ Math.max( 1, initialCapacity ) ];
+		this.ends = new int[ Math.max( 1, initialCapacity ) ];
+		this.values = new float[ Math.max( 1, initialCapacity ) ];
+	}
+
+	/**
+	 * Add the value of a bedgraph/pileup/coverage line to all positions of the entry. Coverage lines hold a single position.
+	 * As before zero values are not stored, so they do not replace an earlier value of the same position.
+	 */
+	@Override
+	public void add( final String[] entries, final int yValuePos )
+	{
+		final float value = Float.parseFloat( entries[ yValuePos ] );
+		if( value != 0f )
+		{
+			final int start = Integer.parseInt( entries[ 1 ] );
+			final int end = yValuePos == 3 ? Integer.parseInt( entries[ 2 ] ) : start + 1;
+			putRun( start, end, value );
+		}
+	}
+
+	public void put( final int position, final float value )
+	{
+		putRun( position, position + 1, value );
+	}
+
+	/**
+	 * Add the value of the positions [start, end). As with HashMap.put a later value for the same position replaces the earlier one.
+	 * Adjacent runs of the same value are joined. Call finish() after the last put.
+	 * @param start
+	 * @param end
+	 * @param value
+	 */
+	public void putRun( final int start, final int end, final float value )
+	{
+		if( end <= start )
+			return;
+
+		if( size > 0 )
+		{
+			if( start == ends[ size - 1 ] && value == values[ size - 1 ] )
+			{
+				ends[ size - 1 ] = end;
+				return;
+			}
+			if( start < ends[ size - 1 ] )
+				sorted = false;
+		}
+
+		if( size == starts.length )
+		{
+			final int newCapacity = (int) Math.min( Integer.MAX_VALUE - 8, (long) starts.length * 2 );
+			starts = Arrays.copyOf( starts, newCapacity );
+			ends = Arrays.copyOf( ends, newCapacity );
+			values = Arrays.copyOf( values, newCapacity );
+		}
+
+		starts[ size ] = start;
+		ends[ size ] = end;
+		values[ size ] = value;
+		size++;
+	}
+
+	/**
+	 * Resolve unsorted or overlapping runs (a later run replaces the overlapped part of earlier runs) and trim the arrays.
+	 */
+	@Override
+	public void finish()
+	{
+		if( !sorted )
+			resolveOverlaps();
+
+		if( starts.length != size )
+		{
+			starts = Arrays.copyOf( starts, size );
+			ends = Arrays.copyOf( ends, size );
+			values = Arrays.copyOf( values, size );
+		}
+	}
+
+	/**
+	 * Sweep over all run boundaries. Between two boundaries the latest added run covering them defines the value.
+	 */
+	protected void resolveOverlaps()
+	{
+		//Runs ordered by start, ties in insertion order
+		final long[] order = new long[ size ];
+		for( int i = 0; i < size; i++ )
+			order[ i ] = ( (long) starts[ i ] << 32 ) | i;
+		Arrays.sort( order );
+
+		final int[] boundaries = new int[ 2 * size ];
+		for( int i = 0; i < size; i++ )
+		{
+			boundaries[ 2 * i ] = starts[ i ];
+			boundaries[ 2 * i + 1 ] = ends[ i ];
+		}
+		Arrays.sort( boundaries );
+
+		//Covering runs, latest added first. Runs that ended are removed lazily.
+		final PriorityQueue<Integer> active = new PriorityQueue<Integer>( 16, new Comparator<Integer>()
+		{
+			@Override
+			public int compare( final Integer a, final Integer b ) { return b.compareTo( a ); }
+		});
+
+		final int[] newStarts = new int[ 2 * size ];
+		final int[] newEnds = new int[ 2 * size ];
+		final float[] newValues = new float[ 2 * size ];
+		int newSize = 0;
+		int next = 0;
+		for( int b = 0; b < boundaries.length - 1; b++ )
+		{
+			final int from = boundaries[ b ];
+			final int to = boundaries[ b + 1 ];
+			if( from == to )
+				continue;
+
+			while( next < size && (int) ( order[ next ] >> 32 ) <= from )
+				active.add( (int) order[ next++ ] );
+			while( !active.isEmpty() && ends[ active.peek() ] <= from )
+				active.poll();
+
+			if( active.isEmpty() )
+				continue;
+
+			final float value = values[ active.peek() ];
+			if( newSize > 0 && newEnds[ newSize - 1 ] == from && newValues[ newSize - 1 ] == value )
+			{
+				newEnds[ newSize - 1 ] = to;
+			}
+			else
+			{
+				newStarts[ newSize ] = from;
+				newEnds[ newSize ] = to;
+				newValues[ newSize ] = value;
+				newSize++;
+			}
+		}
+
+		starts = newStarts;
+		ends = newEnds;
+		values = newValues;
+		size = newSize;
+		sorted = true;
+	}
+
+	/**
+	 * Return the index of the first run ending after position.
+	 * @param position
+	 * @return
+	 */
+	public int indexOf( final int position )
+	{
+		int low = 0;
+		int high = size;
+		while( low < high )
+		{
+			final int mid = ( low + high ) >>> 1;
+			if( ends[ mid ] <= position )
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Return the value at position, 0 if the position is not covered.
+	 * @param position
+	 * @return
+	 */
+	public float get( final int position )
+	{
+		final int index = indexOf( position );
+		if( index < size && starts[ index ] <= position )
+			return values[ index ];
+		else
+			return 0;
+	}
+
+	/**
+	 * Copy the values of the window [start, end) into window. Values are reversed for windows on the minus strand.
+	 * @param start
+	 * @param end
+	 * @param plusStrand
+	 * @param window array of at least end - start entries
+	 */
+	public void fillWindow( final int start, final int end, final boolean plusStrand, final float[] window )
+	{
+		Arrays.fill( window, 0, end - start, 0f );
+
+		for( int i = indexOf( start ); i < size && starts[ i ] < end; i++ )
+		{
+			final int from = Math.max( start, starts[ i ] );
+			final int to = Math.min( end, ends[ i ] );
+			if( plusStrand )
+				Arrays.fill( window, from - start, to - start, values[ i ] );
+			else
+				Arrays.fill( window, end - to, end - from, values[ i ] );
+		}
+	}
+
+	@Override
+	public void extractWindow( final String[] entry, final int start, final int end, final boolean plusStrand, final WindowHandler handler )
+	{
+		final float[] window = new float[ end - start ];
+		fillWindow( start, end, plusStrand, window );
+		handler.addWindow( entry, window );
+	}
+
+	/**
+	 * Build the prefix sum index over the runs.
+	 */
+	protected void buildIndex()
+	{
+		cumulativeSums = new double[ size + 1 ];
+		cumulativeCovered = new long[ size + 1 ];
+		for( int i = 0; i < size; i++ )
+		{
+			final int length = ends[ i ] - starts[ i ];
+			cumulativeSums[ i + 1 ] = cumulativeSums[ i ] + (double) values[ i ] * length;
+			cumulativeCovered[ i + 1 ] = cumulativeCovered[ i ] + ( values[ i ] != 0 ? length : 0 );
+		}
+	}
+
+	/**
+	 * Return the sum of all positions before position, the number of non zero positions before it in covered[ 0 ].
+	 * @param position
+	 * @param covered
+	 * @return
+	 */
+	protected double prefixSum( final int position, final long[] covered )
+	{
+		final int index = indexOf( position );
+		double sum = cumulativeSums[ index ];
+		covered[ 0 ] = cumulativeCovered[ index ];
+
+		//The run containing position is only counted up to position
+		if( index < size && starts[ index ] < position )
+		{
+			sum += (double) values[ index ] * ( position - starts[ index ] );
+			if( values[ index ] != 0 )
+				covered[ 0 ] += position - starts[ index ];
+		}
+		return sum;
+	}
+
+	@Override
+	public void extractSummary( final String[] entry, final int start, final int end, final SummaryHandler handler )
+	{
+		if( cumulativeSums == null )
+			buildIndex();
+
+		if( end <= start )
+		{
+			handler.addSummary( entry, 0.0, 0 );
+			return;
+		}
+
+		final long[] coveredStart = new long[ 1 ], coveredEnd = new long[ 1 ];
+		final double sum = prefixSum( end, coveredEnd ) - prefixSum( start, coveredStart );
+		handler.addSummary( entry, sum, (int) ( coveredEnd[ 0 ] - coveredStart[ 0 ] ) );
+	}
+
+	/**
+	 * @return the number of stored runs
+	 */
+	@Override
+	public int size() { return size; }
+}
@@ -49,4 +49,82 @@ public class GaussianKernel
     
             return gaussianKernel;
     }
+
+    /**
+     * Creates a kernel of the first or second derivative of the gaussian, sized as createGaussianKernel1DDouble.
+     * Applied like the gaussian kernel (kernel[ 0 ] weights the leftmost position) it returns the slope
+     * or the curvature of the blurred signal.
+     *
+     * The sampled kernels are normalized to be exact for polynomials: the first derivative kernel returns 1
+     * for a linear ramp of slope 1, the second derivative kernel returns 0 for constant and 1 for x^2/2.
+     *
+     * @param sigma Standard Derivation of the gaussian function, central differences for sigma <= 0
+     * @param order 1 or 2
+     * @return double[] The derivative kernel
+     */
+    public static double[] createGaussianDerivativeKernel1DDouble(double sigma, int order)
+    {
+        if (order != 1 && order != 2)
+            throw new IllegalArgumentException("Only the first and second derivative are supported: " + order);
+
+        if (sigma <= 0)
+            return createCentralDifferenceKernel1DDouble(order);
+
+        final double[] gaussianKernel = createGaussianKernel1DDouble(sigma, true);
+        final int radius = gaussianKernel.length / 2;
+        final double sq_sigma = sigma * sigma;
+        final double[] kernel = new double[gaussianKernel.length];
+
+        if (order == 1)
+        {
+            // -G'(-t) = t/sigma^2 G(t), scaled to sum( t * k(t) ) = 1
+            double moment = 0;
+            for (int i = 0; i < kernel.length; i++)
+            {
+                final int t = i - radius;
+                kernel[i] = t / sq_sigma * gaussianKernel[i];
+                moment += t * kernel[i];
+            }
+            // the gaussian underflows to a single position for very small sigma
+            if (moment == 0 || Double.isNaN(moment) || Double.isInfinite(moment))
+                return createCentralDifferenceKernel1DDouble(order);
+            for (int i = 0; i < kernel.length; i++)
+                kernel[i] /= moment;
+        }
+        else
+        {
+            // G''(t) = ( t^2 - sigma^2 )/sigma^4 G(t), shifted to sum 0 and scaled to sum( t^2/2 * k(t) ) = 1
+            double sum = 0;
+            for (int i = 0; i < kernel.length; i++)
+            {
+                final int t = i - radius;
+                kernel[i] = (t * t - sq_sigma) / (sq_sigma * sq_sigma) * gaussianKernel[i];
+                sum += kernel[i];
+            }
+
+            double moment = 0;
+            for (int i = 0; i < kernel.length; i++)
+            {
+                final int t = i - radius;
+                kernel[i] -= sum * gaussianKernel[i];
+                moment += t * t / 2.0 * kernel[i];
+            }
+            if (moment == 0 || Double.isNaN(moment) || Double.isInfinite(moment))
+                return createCentralDifferenceKernel1DDouble(order);
+            for (int i = 0; i < kernel.length; i++)
+                kernel[i] /= moment;
+        }
+
+        return kernel;
+    }
+
+    /**
+     * Central difference of the first or second derivative, the limit of the gaussian derivative kernels for sigma towards 0.
+     * @param order 1 or 2
+     * @return
+     */
+    public static double[] createCentralDifferenceKernel1DDouble(int order)
+    {
+        return order == 1 ? new double[] { -0.5, 0, 0.5 } : new double[] { 1, -2, 1 };
+    }
 }
@@ -0,0 +1,230 @@
+package bedgraphTools;
+
+import java.util.Arrays;
+
+/**
+ * Coverage values of a single chromosome backed by primitive arrays.
+ * Covered positions are stored sorted in an int[] next to an int[] of their values.
+ * Compared to a HashMap<Integer, Integer> this needs 8 bytes instead of ~80 bytes per covered position.
+ * Positions without a value are reported as 0.
+ */
+public class IntCoverage extends ChromosomeCoverage
+{
+	protected int[] positions, values;
+	protected int size = 0;
+	protected boolean sorted = true;
+
+	//Prefix sum index, sum and number of non zero values of the first i stored positions. Built by the first summary.
+	protected long[] cumulativeSums = null;
+	protected int[] cumulativeCovered = null;
+
+	public IntCoverage()
+	{
+		this( 1024 );
+	}
+
+	public IntCoverage( final int initialCapacity )
+	{
+		this.positions = new int[ Math.max( 1, initialCapacity ) ];
+		this.values = new int[ Math.max( 1, initialCapacity ) ];
+	}
+
+	/**
+	 * Add the value of a position. As with HashMap.put a later value for the same position replaces the earlier one.
+	 * Call finish() after the last put.
+	 * @param position
+	 * @param value
+	 */
+	public void put( final int position, final int value )
+	{
+		if( size > 0 && position <= positions[ size - 1 ] )
+		{
+			if( position == positions[ size - 1 ] )
+			{
+				values[ size - 1 ] = value;
+				return;
+			}
+			sorted = false;
+		}
+
+		if( size == positions.length )
+		{
+			final int newCapacity = (int) Math.min( Integer.MAX_VALUE - 8, (long) positions.length * 2 );
+			positions = Arrays.copyOf( positions, newCapacity );
+			values = Arrays.copyOf( values, newCapacity );
+		}
+
+		positions[ size ] = position;
+		values[ size ] = value;
+		size++;
+	}
+
+	/**
+	 * Add the value of a pileup/coverage line. Only the start position of an entry is stored.
+	 */
+	@Override
+	public void add( final String[] entries, final int yValuePos )
+	{
+		put( Integer.parseInt( entries[ 1 ] ), Integer.parseInt( entries[ yValuePos ] ) );
+	}
+
+	/**
+	 * Sort the positions if the input was not coordinate sorted (keeping the last value of duplicated positions) and trim the arrays.
+	 */
+	@Override
+	public void finish()
+	{
+		if( !sorted )
+		{
+			//Sort position and insertion order together, so the last value of a duplicated position can be kept.
+			final long[] order = new long[ size ];
+			for( int i = 0; i < size; i++ )
+				order[ i ] = ( (long) positions[ i ] << 32 ) | i;
+			Arrays.sort( order );
+
+			final int[] sortedPositions = new int[ size ];
+			final int[] sortedValues = new int[ size ];
+			int newSize = 0;
+			for( int i = 0; i < size; i++ )
+			{
+				final int position = (int) ( order[ i ] >> 32 );
+				final int value = values[ (int) order[ i ] ];
+				if( newSize > 0 && sortedPositions[ newSize - 1 ] == position )
+				{
+					sortedValues[ newSize - 1 ] = value;
+				}
+				else
+				{
+					sortedPositions[ newSize ] = position;
+					sortedValues[ newSize ] = value;
+					newSize++;
+				}
+			}
+			positions = sortedPositions;
+			values = sortedValues;
+			size = newSize;
+			sorted = true;
+		}
+
+		if( positions.length != size )
+		{
+			positions = Arrays.copyOf( positions, size );
+			values = Arrays.copyOf( values, size );
+		}
+	}
+
+	/**
+	 * Return the index of the first stored position >= position.
+	 * @param position
+	 * @return
+	 */
+	public int indexOf( final int position )
+	{
+		int low = 0;
+		int high = size;
+		while( low < high )
+		{
+			final int mid = ( low + high ) >>> 1;
+			if( positions[ mid ] < position )
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Return the value at position, 0 if the position is not covered.
+	 * @param position
+	 * @return
+	 */
+	public int get( final int position )
+	{
+		final int index = indexOf( position );
+		if( index < size && positions[ index ] == position )
+			return values[ index ];
+		else
+			return 0;
+	}
+
+	/**
+	 * Copy the values of the window [start, end) into window. Values are reversed for windows on the minus strand.
+	 * @param start
+	 * @param end
+	 * @param plusStrand
+	 * @param window array of at least end - start entries
+	 */
+	public void fillWindow( final int start, final int end, final boolean plusStrand, final int[] window )
+	{
+		Arrays.fill( window, 0, end - start, 0 );
+
+		for( int i = indexOf( start ); i < size && positions[ i ] < end; i++ )
+		{
+			if( plusStrand )
+				window[ positions[ i ] - start ] = values[ i ];
+			else
+				window[ end - positions[ i ] - 1 ] = values[ i ];
+		}
+	}
+
+	@Override
+	public void extractWindow( final String[] entry, final int start, final int end, final boolean plusStrand, final WindowHandler handler )
+	{
+		final int[] window = new int[ end - start ];
+		fillWindow( start, end, plusStrand, window );
+		handler.addWindow( entry, window );
+	}
+
+	/**
+	 * Build the prefix sum index over the stored positions.
+	 */
+	protected void buildIndex()
+	{
+		cumulativeSums = new long[ size + 1 ];
+		cumulativeCovered = new int[ size + 1 ];
+		for( int i = 0; i < size; i++ )
+		{
+			cumulativeSums[ i + 1 ] = cumulativeSums[ i ] + values[ i ];
+			cumulativeCovered[ i + 1 ] = cumulativeCovered[ i ] + ( values[ i ] != 0 ? 1 : 0 );
+		}
+	}
+
+	/**
+	 * Return the sum of the values in [start, end) from the prefix sum index.
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public long getSum( final int start, final int end )
+	{
+		if( cumulativeSums == null )
+			buildIndex();
+
+		final int first = indexOf( start );
+		return cumulativeSums[ Math.max( first, indexOf( end ) ) ] - cumulativeSums[ first ];
+	}
+
+	/**
+	 * Return the number of positions in [start, end) with a non zero value from the prefix sum index.
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public int getCoveredBases( final int start, final int end )
+	{
+		if( cumulativeSums == null )
+			buildIndex();
+
+		final int first = indexOf( start );
+		return cumulativeCovered[ Math.max( first, indexOf( end ) ) ] - cumulativeCovered[ first ];
+	}
+
+	@Override
+	public void extractSummary( final String[] entry, final int start, final int end, final SummaryHandler handler )
+	{
+		handler.addSummary( entry, getSum( start, end ), getCoveredBases( start, end ) );
+	}
+
+	@Override
+	public int size() { return size; }
+}
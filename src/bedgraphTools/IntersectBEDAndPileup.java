@@ -1,113 +1,241 @@
 package bedgraphTools;
 
+import gffFiles.BEDIntervalIndex;
 import gffFiles.BEDentry;
-import inputOutput.TextFileAccess;
 import inputOutput.ZipFileAccess;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import outputTools.OutputWriter;
 
 import array.tools.IntArrayTools;
 
 public class IntersectBEDAndPileup 
 {
 	private File pileupFile, bedFile; 
+	private final boolean summary; 
+	private final OutputWriter out = new OutputWriter(); 
+	
+	private BEDIntervalIndex bedIndex; 
+	
+	//Sweep over the start sorted BED entries of the current chromosome: entries [nextToWrite, nextToOpen) have been opened,
+	//active holds the indices of those still collecting values
+	private BEDentry[] chrEntries; 
+	private int[][] values; 
+	private long[] sums; 
+	private int[] coveredBases; 
+	private boolean[] done; 
+	private int[] active; 
+	private int nrOfActive, nextToOpen, nextToWrite; 
 	
 	public IntersectBEDAndPileup( final File pileupFile, final File bedFile )
+	{
+		this( pileupFile, bedFile, false ); 
+	}
+	
+	/**
+	 * @param pileupFile
+	 * @param bedFile
+	 * @param summary print sum, mean and covered positions per BED entry instead of all values
+	 */
+	public IntersectBEDAndPileup( final File pileupFile, final File bedFile, final boolean summary )
 	{
 		this.pileupFile = pileupFile; 
 		this.bedFile = bedFile; 
+		this.summary = summary; 
 	}
 	
 	private void parsePileup() throws IOException
 	{
+		//The BED file is parsed once, its entries are swept along the sorted pileup chromosome by chromosome
+		bedIndex = new BEDIntervalIndex( bedFile ); 
+		
 		BufferedReader in = ZipFileAccess.openGZipFileRead( pileupFile ); 
 		
 		String[] entries; 
-		String currentChr = "empty";
-		HashMap<Integer, Integer> posValueHash = new HashMap<Integer, Integer>();
+		String currentChr = null;
+		final HashSet<String> finishedChromosomes = new HashSet<String>(); 
 		int count = 0; 
+		int lastPosition = -1, lastValue = 0; 
 		while( in.ready() )
 		{
-				
 			entries = in.readLine().split( "\t" );
 			if( count % 1000000 == 0 )
 				System.err.println( "Current chromosome: " + entries[ 0 ] + " position " + entries[ 1 ] ); 
 			
-			if( currentChr.equals( entries[ 0 ] ) )
-			{
-				posValueHash.put( Integer.parseInt( entries[ 1 ] ), Integer.parseInt( entries[ 3 ] ) ); 
-			}
-			else
+			final int position = Integer.parseInt( entries[ 1 ] ); 
+			if( !entries[ 0 ].equals( currentChr ) )
 			{
-				if( !currentChr.equals( "empty" ) )
+				if( currentChr != null )
 				{
-					intersectCurrentChromosome(currentChr, posValueHash );
+					if( lastPosition != -1 )
+						addPosition( lastPosition, lastValue ); 
+					endChromosome(); 
+					finishedChromosomes.add( currentChr ); 
 				}
 				
-				posValueHash = new HashMap<Integer, Integer>(); 
 				currentChr = entries[ 0 ];
+				if( finishedChromosomes.contains( currentChr ) )
+					throw new IOException( "Chromosome " + currentChr + " is not contiguous in the pileup. Please sort the pileup by chromosome and position." ); 
+				startChromosome( currentChr ); 
+				lastPosition = -1; 
 			} 
+			else if( position < lastPosition )
+			{
+				throw new IOException( "Position " + position + " of chromosome " + currentChr + " is not in ascending order. Please sort the pileup by chromosome and position." ); 
+			}
+			
+			//As before, the last value of a repeated position is used
+			if( position != lastPosition && lastPosition != -1 )
+				addPosition( lastPosition, lastValue ); 
+			lastPosition = position; 
+			lastValue = Integer.parseInt( entries[ 3 ] ); 
 			count++; 
 		}
 		
-		intersectCurrentChromosome( currentChr, posValueHash );
+		if( currentChr != null )
+		{
+			if( lastPosition != -1 )
+				addPosition( lastPosition, lastValue ); 
+			endChromosome(); 
+		}
+		in.close(); 
+		out.flush(); 
 	}
 	
-	private void intersectCurrentChromosome( final String currentChrId, final HashMap<Integer, Integer> currentChrHash ) throws IOException
+	/**
+	 * Prepare the sweep over the BED entries of chr.
+	 * @param chr
+	 */
+	private void startChromosome( final String chr )
 	{
-		BufferedReader in = TextFileAccess.openFileRead( this.bedFile ); 
+		chrEntries = bedIndex.getEntries( chr ); 
+		values = summary ? null : new int[ chrEntries.length ][]; 
+		sums = summary ? new long[ chrEntries.length ] : null; 
+		coveredBases = summary ? new int[ chrEntries.length ] : null; 
+		done = new boolean[ chrEntries.length ]; 
+		active = new int[ chrEntries.length ]; 
+		nrOfActive = 0; 
+		nextToOpen = 0; 
+		nextToWrite = 0; 
+	}
+	
+	/**
+	 * Open the entries starting at or before position, add the value to all open entries containing the position and finish the entries ending before it.
+	 * @param position
+	 * @param value
+	 * @throws IOException
+	 */
+	private void addPosition( final int position, final int value ) throws IOException
+	{
+		while( nextToOpen < chrEntries.length && chrEntries[ nextToOpen ].getChromStart() <= position )
+		{
+			final BEDentry entry = chrEntries[ nextToOpen ]; 
+			if( !summary )
+				values[ nextToOpen ] = new int[ Math.max( 0, entry.getChromEnd() - entry.getChromStart() ) ]; 
+			active[ nrOfActive++ ] = nextToOpen++; 
+		}
 		
-		BEDentry entry; 
-		while( in.ready() )
+		int stillActive = 0; 
+		for( int a = 0; a < nrOfActive; a++ )
 		{
-			entry = new BEDentry( in.readLine() );
-			if( entry.getChrom().equals( currentChrId ) )
+			final int i = active[ a ]; 
+			final BEDentry entry = chrEntries[ i ]; 
+			if( entry.getChromEnd() <= position )
 			{
-				intersect( entry, currentChrHash );
+				done[ i ] = true; 
+				continue; 
 			}
-			 
+			
+			if( summary )
+			{
+				sums[ i ] += value; 
+				if( value != 0 )
+					coveredBases[ i ]++; 
+			}
+			else
+			{
+				values[ i ][ position - entry.getChromStart() ] = value; 
+			}
+			active[ stillActive++ ] = i; 
 		}
+		nrOfActive = stillActive; 
 		
-		in.close(); 
+		writeFinished(); 
 	}
 	
-	private void intersect( final BEDentry entry, final HashMap<Integer, Integer> posValueHash )
+	/**
+	 * Finish all entries of the current chromosome, positions after the last pileup position count as 0.
+	 * @throws IOException
+	 */
+	private void endChromosome() throws IOException
 	{
-		final int[] values = new int[ entry.getChromEnd() - entry.getChromStart() ];
-		int currentValue; 
-		for( int i = 0; i < values.length; i++ )
+		while( nextToOpen < chrEntries.length )
 		{
-			if( posValueHash.containsKey( entry.getChromStart() + i ) )
-			{
-				values[ i ] = posValueHash.get( ( entry.getChromStart() + i ) ); 	
-			}
+			final BEDentry entry = chrEntries[ nextToOpen ]; 
+			if( !summary )
+				values[ nextToOpen ] = new int[ Math.max( 0, entry.getChromEnd() - entry.getChromStart() ) ]; 
+			nextToOpen++; 
+		}
+		Arrays.fill( done, true ); 
+		nrOfActive = 0; 
+		writeFinished(); 
+	}
+	
+	/**
+	 * Write the finished entries in start order, an entry waits for all entries starting before it.
+	 * @throws IOException
+	 */
+	private void writeFinished() throws IOException
+	{
+		while( nextToWrite < nextToOpen && done[ nextToWrite ] )
+		{
+			intersect( nextToWrite ); 
+			if( !summary )
+				values[ nextToWrite ] = null; 
+			nextToWrite++; 
+		}
+	}
+	
+	private void intersect( final int i ) throws IOException
+	{
+		final BEDentry entry = chrEntries[ i ]; 
+		if( summary )
+		{
+			final int length = entry.getChromEnd() - entry.getChromStart(); 
+			final double mean = length > 0 ? (double) sums[ i ] / length : 0; 
+			out.print( entry.getName() ).tab().print( sums[ i ] ).tab().print( mean ).tab().print( coveredBases[ i ] ).println(); 
+		}
+		else
+		{
+			out.print( entry.getName() ).tab().println( IntArrayTools.arrayToString( values[ i ], "," ) ); 
 		}
-		
-		System.out.println( entry.getName() + "\t" + IntArrayTools.arrayToString(values, "," ) ); 
 	}
 	
 	public static void main(String[] args) throws IOException
 	{
 		
-		if( args.length < 2 || args.length > 6 )
+		if( args.length < 2 || args.length > 3 || ( args.length == 3 && !args[ 0 ].equals( "-summary" ) ) )
 		{
 			final String info = "\n#######################\n" +
-					"java -jar intersectBedAndPileup input.pileup input.BED\n" +
+					"java -jar intersectBedAndPileup [-summary] input.pileup input.BED\n" +
 					"#######################\n" + 
 					"Returns values of pileup defined in bed file.\n" +
+					"The bed file is read once, the pileup has to be sorted by chromosome and position (as written by samtools). Entries are returned per pileup chromosome, ordered by start.\n" +
+					"With -summary the name, sum, mean and number of covered (non zero) positions of each bed entry are returned instead of all values.\n" +
 					"\n"; 
 			System.err.println( info ); 
 		}
 		else 
 		{
-			final File pileupFile = new File( args[ 0 ] );
-			final File bedFile = new File( args[ 1 ] );
+			final File pileupFile = new File( args[ args.length - 2 ] );
+			final File bedFile = new File( args[ args.length - 1 ] );
 			 
-			IntersectBEDAndPileup ibp = new IntersectBEDAndPileup( pileupFile, bedFile );
+			IntersectBEDAndPileup ibp = new IntersectBEDAndPileup( pileupFile, bedFile, args.length == 3 );
 			ibp.parsePileup(); 
 		}
 		
@@ -0,0 +1,355 @@
+package bedgraphTools;
+
+import inputOutput.TextFileAccess;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import outputTools.OutputWriter;
+
+/**
+ * Aggregates the windows of one BED file over several coverage tracks in one job, as PileupWindowFloat does for a single track.
+ * The BED file is parsed once and shared by all tracks, the tracks are read and aggregated in parallel.
+ * With perChromosome processing only one chromosome of each track is hashed at a time, the N tracks of a chromosome in parallel.
+ * Averaged or summed profiles are printed as a tracks x bins matrix, all other outputs once per track with the track name as first column.
+ */
+public class MultiTrackWindow
+{
+	protected final CoverageWindowEngine engine;
+	protected final String inputFormat, outputFormat, processing, inputBED;
+	protected final int bins;
+
+	//Parsed BED entries, null for streaming which reads the BED file along with each track
+	protected final ArrayList<String[]> windows;
+
+	/**
+	 * @param inputFormat bedgraph, pileup, coverage or binary
+	 * @param outputFormat avg, sum, var, median, quantiles, totals or summary
+	 * @param processing genome, perChromosome or streaming
+	 * @param bins
+	 * @param threads number of tracks read at once
+	 * @param tracks
+	 * @param inputBED
+	 */
+	public MultiTrackWindow( final String inputFormat, final String outputFormat, final String processing, final int bins, final int threads, final ArrayList<String> tracks, final String inputBED )
+	{
+		this.engine = new CoverageWindowEngine( inputFormat, true );
+		this.inputFormat = inputFormat;
+		this.outputFormat = outputFormat;
+		this.processing = processing;
+		this.bins = bins;
+		this.inputBED = inputBED;
+		this.windows = processing.equals("streaming") && !inputFormat.equals("binary") ? null : engine.readBED( inputBED );
+
+		final ExecutorService executor = Executors.newFixedThreadPool( threads );
+		final OutputWriter out = new OutputWriter();
+		try
+		{
+			final ArrayList<WindowAggregator> aggregators;
+			if( processing.equals("perChromosome") && !inputFormat.equals("binary") )
+				aggregators = processChromosomes( tracks, executor );
+			else
+				aggregators = processTracks( tracks, executor );
+
+			for( int i = 0; i < tracks.size(); i++ )
+				print( new File( tracks.get( i ) ).getName(), aggregators.get( i ), out );
+			out.flush();
+		}
+		catch (Exception e)
+		{
+			System.err.println( "Unable to aggregate the windows of all tracks. " + e );
+			System.exit( 1 );
+		}
+		executor.shutdown();
+
+		System.exit( 0 );
+	}
+
+	/**
+	 * Aggregate every track as a whole, N tracks at a time.
+	 * @param tracks
+	 * @param executor
+	 * @return the aggregator of every track
+	 * @throws Exception
+	 */
+	protected ArrayList<WindowAggregator> processTracks( final ArrayList<String> tracks, final ExecutorService executor ) throws Exception
+	{
+		final ArrayList<Future<WindowAggregator>> futures = new ArrayList<Future<WindowAggregator>>();
+		for( final String track : tracks )
+		{
+			futures.add( executor.submit( new Callable<WindowAggregator>()
+			{
+				@Override
+				public WindowAggregator call() throws IOException
+				{
+					final WindowAggregator aggregator = WindowAggregator.create( outputFormat, bins );
+					processTrack( track, aggregator );
+					return aggregator;
+				}
+			}) );
+		}
+
+		final ArrayList<WindowAggregator> aggregators = new ArrayList<WindowAggregator>();
+		for( final Future<WindowAggregator> future : futures )
+			aggregators.add( future.get() );
+		return aggregators;
+	}
+
+	/**
+	 * Aggregate one chromosome after the other, the chromosome of all tracks in parallel. Every track is read once, block by block,
+	 * so it has to list each chromosome in one block and in the order of input.BED. Chromosomes without windows are skipped.
+	 * @param tracks
+	 * @param executor
+	 * @return the aggregator of every track
+	 * @throws Exception
+	 */
+	protected ArrayList<WindowAggregator> processChromosomes( final ArrayList<String> tracks, final ExecutorService executor ) throws Exception
+	{
+		//Split the BED entries by chromosome, rank chromosomes by their order in the BED file
+		final ArrayList<String> chromosomes = new ArrayList<String>();
+		final HashMap<String, ArrayList<String[]>> chrWindows = new HashMap<String, ArrayList<String[]>>();
+		for( final String[] entries : windows )
+		{
+			if( !chrWindows.containsKey( entries[ 0 ] ) )
+			{
+				chrWindows.put( entries[ 0 ], new ArrayList<String[]>() );
+				chromosomes.add( entries[ 0 ] );
+			}
+			chrWindows.get( entries[ 0 ] ).add( entries );
+		}
+		final HashMap<String, Integer> chrRank = new HashMap<String, Integer>();
+		for( final String chr : chromosomes )
+			chrRank.put( chr, chrRank.size() );
+
+		final ArrayList<WindowAggregator> aggregators = new ArrayList<WindowAggregator>();
+		final ArrayList<TrackReader> readers = new ArrayList<TrackReader>();
+		for( final String track : tracks )
+		{
+			aggregators.add( WindowAggregator.create( outputFormat, bins ) );
+			readers.add( new TrackReader( track, chrRank ) );
+		}
+
+		for( final String chr : chromosomes )
+		{
+			final ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+			for( int i = 0; i < tracks.size(); i++ )
+			{
+				final TrackReader reader = readers.get( i );
+				final WindowAggregator aggregator = aggregators.get( i );
+				futures.add( executor.submit( new Callable<Object>()
+				{
+					@Override
+					public Object call() throws IOException
+					{
+						final ChromosomeCoverage coverage = reader.loadChromosome( chr );
+						for( final String[] entries : chrWindows.get( chr ) )
+							engine.extractWindow( entries, coverage, aggregator );
+						return null;
+					}
+				}) );
+			}
+
+			//The aggregators are only used by one chromosome at a time
+			for( final Future<?> future : futures )
+				future.get();
+		}
+
+		for( final TrackReader reader : readers )
+			reader.close();
+		return aggregators;
+	}
+
+	/**
+	 * Reads a track one chromosome block after the other, in the order of input.BED.
+	 */
+	protected class TrackReader
+	{
+		protected final String track;
+		protected final HashMap<String, Integer> chrRank;
+		protected final BufferedReader in;
+
+		//Next unread line, null at the end of the track
+		protected String[] next;
+
+		public TrackReader( final String track, final HashMap<String, Integer> chrRank ) throws IOException
+		{
+			this.track = track;
+			this.chrRank = chrRank;
+			this.in = TextFileAccess.openFileRead( track );
+			this.next = readEntry();
+		}
+
+		protected String[] readEntry() throws IOException
+		{
+			return in.ready() ? in.readLine().split("\t") : null;
+		}
+
+		/**
+		 * Hash the block of chr, an empty coverage if the track continues with a later chromosome.
+		 * @param chr
+		 * @return
+		 * @throws IOException
+		 */
+		public ChromosomeCoverage loadChromosome( final String chr ) throws IOException
+		{
+			final int rank = chrRank.get( chr );
+			final ChromosomeCoverage coverage = engine.createCoverage();
+			while( next != null )
+			{
+				final Integer nextRank = chrRank.get( next[ 0 ] );
+				if( nextRank != null )
+				{
+					if( nextRank > rank )
+						break;
+					if( nextRank < rank )
+					{
+						System.err.println( "Processing per chromosome requires tracks listing each chromosome in one block, in the order of input.BED. Unsorted chromosome " + next[ 0 ] + " in " + track );
+						System.exit( 1 );
+					}
+					coverage.add( next, engine.yValuePos );
+				}
+				next = readEntry();
+			}
+			coverage.finish();
+			return coverage;
+		}
+
+		public void close() throws IOException
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Pass the windows of one track to its aggregator.
+	 * @param track
+	 * @param aggregator
+	 * @throws IOException
+	 */
+	protected void processTrack( final String track, final WindowAggregator aggregator ) throws IOException
+	{
+		if( inputFormat.equals("binary") )
+		{
+			final BinaryCoverage coverage = new BinaryCoverage( new File( track ) );
+			final CoveragePyramid pyramid = bins == -1 ? null : CoveragePyramid.open( new File( track ) );
+			for( final String[] entries : windows )
+				engine.extractWindow( entries, coverage, pyramid, aggregator );
+			coverage.close();
+			if( pyramid != null )
+				pyramid.close();
+		}
+		else if( processing.equals("streaming") )
+		{
+			engine.streamWindows( track, inputBED, aggregator );
+		}
+		else
+		{
+			engine.extractWindows( windows, engine.loadGenome( track ), aggregator );
+		}
+	}
+
+	/**
+	 * Print the result of one track: a row of the matrix for avg and sum, otherwise every output line with the track name as first column.
+	 * @param name
+	 * @param aggregator
+	 * @param out
+	 * @throws IOException
+	 */
+	protected void print( final String name, final WindowAggregator aggregator, final OutputWriter out ) throws IOException
+	{
+		if( outputFormat.equals("avg") || outputFormat.equals("sum") )
+		{
+			out.print( name ).tab();
+			( (ProfileAggregator) aggregator ).printRow( out );
+		}
+		else
+		{
+			aggregator.print( out, name );
+		}
+	}
+
+	/**
+	 * Main method used for running this script from shell
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		//Options first, then the tracks, the BED file last
+		int firstTrack = 0;
+		while( firstTrack < args.length && args[ firstTrack ].startsWith( "-" ) )
+			firstTrack++;
+
+		if( firstTrack < 3 || args.length - firstTrack < 2 )
+		{
+			final String info = "\n#######################\n" +
+					"java -cp geneArchitectureToolbox.jar bedgraphTools.MultiTrackWindow -input=[bedgraph,pileup,coverage,binary] -output=[avg,sum,var,median,quantiles,totals,summary] -processing=[genome,perChromosome,streaming] -bins=x -threads=N track1 track2 ... input.BED\n" +
+					"#######################\n" +
+					"Aggregates the windows of input.BED over every track as pileupWindowFloat does, in one job.\n" +
+					"input.BED is parsed once for all tracks, N tracks ( -threads=N , default: number of processors ) are read and aggregated in parallel.\n" +
+					"Averaged ( -output=avg ) or summed ( -output=sum ) windows are returned as a matrix with one row per track: track name followed by the value of every position or bin.\n" +
+					"All other outputs are returned as by pileupWindowFloat for each track, with the track name as an additional first column.\n" +
+					"Each track is hashed completely ( -processing=genome ), so N whole tracks are held in memory at once. For many or large tracks hash one chromosome at a time ( -processing=perChromosome ):\n" +
+					"the chromosome is hashed for N tracks in parallel, memory is bounded by N chromosomes. Each track is read once and has to list every chromosome in one block, in the order of input.BED.\n" +
+					"Alternatively each track is read in a single pass along with the coordinate sorted input.BED ( -processing=streaming ).\n" +
+					"Binary coverage files ( -input=binary ) are memory mapped, the processing option is ignored then.\n" +
+					"Add number of bins ( -bins=x ) if the input.BED windows are of unequal size.\n" +
+					"\n";
+			System.err.println( info );
+		}
+		else
+		{
+			final String input = args[ 0 ].substring( args[ 0 ].indexOf("=") + 1 );
+			if( !input.equals("bedgraph") && !input.equals("pileup") && !input.equals("coverage") && !input.equals("binary") )
+			{
+				System.err.println( "Please specify an input format: bedgraph, pileup, coverage or binary" );
+				System.exit( 1 );
+			}
+
+			final String output = args[ 1 ].substring( args[ 1 ].indexOf("=") + 1 );
+			if( !output.equals("avg") && !output.equals("sum") && !output.equals("var") && !output.equals("median") && !output.equals("quantiles") && !output.equals("totals") && !output.equals("summary") )
+			{
+				System.err.println( "Please specify an output format: Averaged value (avg), Summed value (sum), mean and variance (var), median (median), quantiles (quantiles), per window sum and mean (totals) or per window sum, mean and covered positions (summary)" );
+				System.exit( 1 );
+			}
+
+			final String processing = args[ 2 ].substring( args[ 2 ].indexOf("=") + 1 );
+			if( !processing.equals("genome") && !processing.equals("perChromosome") && !processing.equals("streaming") )
+			{
+				System.err.println( "Please specify a processing method: Entire genome (genome), chromosome by chromosome (perChromosome) or sorted single pass (streaming)" );
+				System.exit( 1 );
+			}
+
+			final ArrayList<String> tracks = new ArrayList<String>();
+			for( int i = firstTrack; i < args.length - 1; i++ )
+				tracks.add( args[ i ] );
+
+			int bins = -1;
+			int threads = Math.min( tracks.size(), Runtime.getRuntime().availableProcessors() );
+			for( int i = 3; i < firstTrack; i++ )
+			{
+				try
+				{
+					final int value = Integer.parseInt( args[ i ].substring( args[ i ].indexOf("=") + 1 ) );
+					if( args[ i ].startsWith( "-threads" ) )
+						threads = value;
+					else
+						bins = value;
+				}
+				catch (Exception e)
+				{
+					System.err.println( "Please provide the number of bins and threads as an Integer value." );
+					System.exit( 1 );
+				}
+			}
+
+			new MultiTrackWindow( input, output, processing, bins, Math.max( 1, threads ), tracks, args[ args.length - 1 ] );
+		}
+	}
+}
@@ -1,437 +1,56 @@
 package bedgraphTools;
 
-import inputOutput.CalenderStuff;
-import inputOutput.TextFileAccess;
-
-import java.io.BufferedReader;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-
-import mpicbg.imglib.algorithm.gauss.DownSample;
-import mpicbg.imglib.container.array.ArrayContainerFactory;
-import mpicbg.imglib.cursor.Cursor;
-import mpicbg.imglib.image.Image;
-import mpicbg.imglib.image.ImageFactory;
-import mpicbg.imglib.interpolation.Interpolator;
-import mpicbg.imglib.interpolation.linear.LinearInterpolatorFactory;
-import mpicbg.imglib.outofbounds.OutOfBoundsStrategyValueFactory;
-import mpicbg.imglib.type.numeric.real.FloatType;
+import java.io.File;
+import java.io.IOException;
 
 public class PileupWindow {
 
 	public String inputFormat, outputFormat; 
 	public int bins;
 	
-	public HashMap<String, HashMap<Integer, Integer>> pileupHash; 
-	public ArrayList<int[]> windowList;
-	int winSizeMax, winSizeMin; 
-	
-	public PileupWindow( final String inputFormat, final String outputFormat, final String processing, final int bins, final String inputPileup, final String inputBED )
-	{
-		if( processing.equals("genome") )
-		{
-			fillPileupHash( inputPileup, inputFormat ); 
-			createWindowList( inputBED ); 		
-		}
-		else 
-		{
-			PrintWriter logOut = TextFileAccess.openFileWrite( "pileuUpWindowLOG_" + CalenderStuff.now( CalenderStuff.DATE_Time ) + ".log");
-			
-			logOut.println( "Pileup file : " + inputPileup + " of format " + inputFormat);
-			logOut.println( "Window BEDFile : " + inputBED + "\n");
-			
-			
-			HashMap<Integer, Integer> chrHash = new HashMap<Integer, Integer>(); 
-			this.windowList = new ArrayList<int[]>(); 
-			for( String chr : getChromosomesInBED( inputBED ) )
-			{	
-				
-				logOut.print( "Chromosome " + chr + " - Creating chromosome Hash from pileupFile\t" );
-				logOut.flush();
-				
-				chrHash = fillChromosomePileupHash( inputPileup, inputFormat, chr );
-				
-				logOut.print( "Done. " + chrHash.values().size() + " entries." + "\n" ); 
-				logOut.print( "Chromosome " + chr + " - Creating value windows from Window BEDFile\t" );
-				logOut.flush(); 
-				
-				addChromosomeWindowsToList( inputBED, chrHash, chr ); 
-				
-				chrHash = null; 
-				System.gc(); 
-				
-				logOut.print( "Done. " + this.windowList.size() + " processed BED entries (Sum over all Chr)" + "\n" );
-				logOut.flush(); 
-				
-			}
-			logOut.close(); 
-		}
-		if( bins == -1 )
-		{
-			printWindowGrouping( outputFormat ); 
-		}
-		else 
-		{
-			printScaledWindows( bins, outputFormat ); 
-			//printWindowGrouping( outputFormat ); 
-		}
-		
-		System.exit( 0 );
-	}
-	
-	public void addChromosomeWindowsToList( final String inputBED, final HashMap<Integer, Integer> chrHash, final String chr )
-	{
-		ArrayList<int[]> windowList = new ArrayList<int[]>(); 
-		
-		this.winSizeMax = - Integer.MAX_VALUE; 
-		this.winSizeMin = Integer.MAX_VALUE; 
-		BufferedReader in = TextFileAccess.openFileRead( inputBED ); 
-		try
-		{
-			String line; 
-			String[] entries;
-			while( in.ready() )
-			{
-				line = in.readLine(); 
-				entries = line.split("\t"); 
-				
-				if( entries[ 0 ].equals( chr ) )
-					windowList.add( getWindowEntry( entries, chrHash ) ); 
-			}
-		}
-		catch (Exception e) 
-		{
-			System.err.println( "Unable to extract values for windows specified in input.BED." );
-			System.exit( 1 ); 
-		} 
-		
-		this.windowList.addAll( windowList ); 
-	}
-	
-	public HashMap<Integer, Integer> fillChromosomePileupHash( final String inputPileup, final String inputFormat, final String chrId )
-	{
-		HashMap<Integer, Integer> chrHash = new HashMap<Integer, Integer>(); 
-		
-		int yValuePos = -1; 
-		if( inputFormat.equals("bedgraph") || inputFormat.equals("pileup") )
-			yValuePos = 3;
-		else if( inputFormat.equals("coverage") )
-			yValuePos = 2; 
-		
-		BufferedReader in = TextFileAccess.openFileRead( inputPileup ); 
-		try
-		{
-			String line; 
-			String[] entries; 
-			while( in.ready() )
-			{
-				line = in.readLine(); 
-				entries = line.split("\t");   
-				
-				if( entries[ 0 ].equals( chrId ) )
-				{
-					chrHash.put( Integer.parseInt( entries[ 1 ]), Integer.parseInt( entries[ yValuePos ] ) ); 
-				}   
-			}
-		}
-		catch (Exception e) 
-		{
-			System.err.println( "Unable to hash values specified in input.bedgraph/pileup." );
-			System.exit( 1 ); 
-		} 
-		
-		return chrHash; 
-	}
-	
-	public ArrayList<String> getChromosomesInBED( final String inputBED )
-	{
-		ArrayList<String> chrList = new ArrayList<String>(); 
-		HashSet<String> chrHash = new HashSet<String>();
-		chrHash.add(""); 
-		
-		BufferedReader in = TextFileAccess.openFileRead( inputBED ); 
-		try
-		{
-			String line; 
-			String[] entries;
-			while( in.ready() )
-			{
-				line = in.readLine(); 
-				 
-				entries = line.split("\t"); 
-				if( !chrHash.contains( entries[ 0 ] ) )
-				{
-					chrList.add( entries[ 0 ] ); 
-					chrHash.add( entries[ 0 ] ); 
-				} 
-			}
-		}
-		catch (Exception e) 
-		{
-			System.err.println( "Unable to extract chromosomes specified in input.BED." );
-			System.exit( 1 ); 
-		} 
-		
-		return chrList; 
-	}
-	
-	public void printScaledWindows( final int bins, final String outputFormat )
-	{
-		
-		ArrayList<float[]> scaledWindowList = new ArrayList<float[]>(); 
-		
-		for( int[] originalWindow : windowList )
-		{
-			float[] scaledWindow = new float[ bins ]; 
-			if( originalWindow.length == bins )
-			{
-				for( int i = 0; i < bins; i++ )
-					scaledWindow[ i ] = (float) originalWindow[ i ]; 
-			}
-			else if( originalWindow.length > bins * 2 )
-			{
-				scaledWindow = scaleDown( originalWindow, bins );
-			}
-			else 
-			{
-				scaledWindow = scaleUp( originalWindow, bins ); 
-			}
-			scaledWindowList.add( scaledWindow ); 
-		}
-		
-		final float[] groupedWindow = new float[ bins ]; 
-		for( float[] window : scaledWindowList )
-		{
-			for( int i = 0; i < window.length; i++ )
-				groupedWindow[ i ] += window[ i ]; 
-		}
-		
-		final int nrOfWindows = windowList.size(); 
-		for( int i = 0; i < groupedWindow.length; i++ )
-		{
-			if( outputFormat.equals( "avg" ) )
-				System.out.println( i + "\t" + groupedWindow[ i ] / nrOfWindows ); 
-			else
-				System.out.println( i + "\t" + groupedWindow[ i ] ); 
-		}
-	}
-	
-	public float[] scaleDown( final int[] originalWindow, final int bins )
-	{
-		Image<FloatType> image = intArrayToFloatImage( originalWindow ); 
-		
-		
-		final int[] size = new int[] { (int) bins };
-		DownSample<FloatType> ds = new DownSample<FloatType>( image, size, 0.5f, 0.5f );
-		ds.process();
-		Image<FloatType> downsampledImage = ds.getResult();
-		
-		return imageToArray( downsampledImage ); 
-	}
-	
-	public float[] scaleUp( final int[] originalWindow, final int bins )
-	{
-		final ImageFactory<FloatType> factory = new ImageFactory<FloatType>( new FloatType(), new ArrayContainerFactory() );
-		final Image<FloatType> scaledTrace = factory.createImage( new int[] { bins } );
-		
-		final Image<FloatType> originalImage = intArrayToFloatImage( originalWindow ); 
-		final double scalingFactor = (double) originalImage.getDimension( 0 ) / (double) scaledTrace.getDimension( 0 );
-		Cursor<FloatType> scaledTraceCursor = scaledTrace.createCursor(); 
-		
-		Interpolator<FloatType> interpolator = originalImage.createInterpolator(new LinearInterpolatorFactory<FloatType>( new OutOfBoundsStrategyValueFactory<FloatType>() ) );
-		
-		int  cursorPos = -1;
-		double originalPos = -1; 
-		final float[] temp = new float[ 1 ]; 
-		while( scaledTraceCursor.hasNext() )
-		{
-			scaledTraceCursor.fwd(); 
-			cursorPos++; 
-			
-			originalPos = cursorPos * scalingFactor; 
-			temp[ 0 ] = (float) originalPos;
-			
-			interpolator.setPosition( temp );
-			scaledTraceCursor.getType().set( interpolator.getType().get() ); 
-			
-			//System.out.println( "Cursor Pos: " + cursorPos + " Scaled Cursor Pos: " + originalPos + " Original Length " + originalTrace.getDimension( 0 ) + " Scaled Length: " + scaledTrace.getDimension( 0 ) ); 
-			
-		}
-		
-		
-		return imageToArray( scaledTrace ); 
-	}
-	
-	public float[] imageToArray( final Image<FloatType> image )
-	{
-		float[] array = new float[ image.getDimension( 0 ) ]; 
-		Cursor<FloatType> cursor = image.createCursor();
-		
-		int x = -1; 
-		while( cursor.hasNext() )
-		{
-			cursor.fwd();
-			x++; 
-			array[ x ] = cursor.getType().get(); 
-		}	
-		return array; 
-	}
-	 
+	public WindowAggregator aggregator; 
 	
-	public Image<FloatType> intArrayToFloatImage( final int[] intArray )
+	/**
+	 * Extract the windows of all input.BED entries with the CoverageWindowEngine (int values) and print their aggregate.
+	 * @param inputFormat
+	 * @param outputFormat avg, sum, var, median, quantiles, totals, summary or matrix
+	 * @param processing
+	 * @param bins
+	 * @param threads
+	 * @param inputPileup
+	 * @param inputBED
+	 * @param matrixOutput .npy file of the matrix output, null otherwise
+	 */
+	public PileupWindow( final String inputFormat, final String outputFormat, final String processing, final int bins, final int threads, final String inputPileup, final String inputBED, final File matrixOutput )
 	{
-		//Convert int[] into Image<FloatType> 
-		final int[] size = new int[] { (intArray.length) }; 
-		ImageFactory<FloatType> factory = new ImageFactory<FloatType>( new FloatType(), new ArrayContainerFactory() ); 
-		Image<FloatType> image = factory.createImage( size ); 
-		Cursor<FloatType> cursor = image.createCursor(); 
+		this.inputFormat = inputFormat; 
+		this.outputFormat = outputFormat; 
+		this.bins = bins; 
+		this.aggregator = outputFormat.equals("matrix") ? createMatrix( bins, matrixOutput ) : WindowAggregator.create( outputFormat, bins ); 
 		
-		int arrayPos = -1; 
-		while( cursor.hasNext() )
-		{
-			cursor.fwd(); 
-			arrayPos++; 
-			
-			cursor.getType().set( (float) intArray[ arrayPos ] );  
-		}
+		new CoverageWindowEngine( inputFormat, false ).process( processing, threads, inputPileup, inputBED, aggregator ); 
+		aggregator.print(); 
 		
-		return image; 
+		System.exit( 0 );
 	}
 	
-	public void printWindowGrouping( final String outputFormat ) 
+	public PileupWindow( final String inputFormat, final String outputFormat, final String processing, final int bins, final int threads, final String inputPileup, final String inputBED )
 	{
-		final double[] groupedWindow = new double[ this.winSizeMax ];
-		
-		for( int[] window : windowList )
-		{
-			for( int i = 0; i < window.length; i++ )
-				groupedWindow[ i ] += window[ i ]; 
-		}
-		
-		final int nrOfWindows = windowList.size(); 
-		for( int i = 0; i < groupedWindow.length; i++ )
-		{
-			if( outputFormat.equals( "avg" ) )
-				System.out.println( i + "\t" + groupedWindow[ i ] / nrOfWindows ); 
-			else
-				System.out.println( i + "\t" + groupedWindow[ i ] ); 
-		}
+		this( inputFormat, outputFormat, processing, bins, threads, inputPileup, inputBED, null ); 
 	}
 	
-	public void createWindowList( final String inputBED )
+	protected static WindowAggregator createMatrix( final int bins, final File matrixOutput )
 	{
-		ArrayList<int[]> windowList = new ArrayList<int[]>(); 
-		
-		
-		this.winSizeMax = - Integer.MAX_VALUE; 
-		this.winSizeMin = Integer.MAX_VALUE; 
-		BufferedReader in = TextFileAccess.openFileRead( inputBED ); 
 		try
 		{
-			String line; 
-			String[] entries;
-			while( in.ready() )
-			{
-				line = in.readLine(); 
-				entries = line.split("\t"); 
-				windowList.add( getWindowEntry( entries, pileupHash.get( entries[ 0 ] ) ) ); 
-			}
+			return new WindowMatrixAggregator( bins, matrixOutput ); 
 		}
-		catch (Exception e) 
+		catch (IOException e) 
 		{
-			System.err.println( "Unable to extract values for windows specified in input.BED." );
+			System.err.println( "Cannot create the matrix file " + matrixOutput + ": " + e ); 
 			System.exit( 1 ); 
-		} 
-		 
-		this.windowList = windowList; 
-	}
-	
-	public int[] getWindowEntry( final String[] entries, final HashMap<Integer, Integer> chrHash )
-	{
-		final int start = Integer.parseInt( entries[ 1 ] ); 
-		final int end = Integer.parseInt( entries[ 2 ] );
-		
-		final int winSize = end - start;
-		final int[] window = new int[ winSize ]; 
-		
-		if( winSizeMax < winSize )
-			winSizeMax = winSize; 
-		if( winSizeMin > winSize )
-			winSizeMin = winSize; 
-		
-		if( entries[ 5 ].equals("+") )
-		{
-			for( int i = start; i < end; i++)
-			{
-				if( chrHash.containsKey( i ) )
-				{
-					window[ i - start ] = chrHash.get( i ); 
-				}
-				else 
-					window[ i - start ] = 0; 
-			}
-		}
-		else
-		{
-			 for( int i = end - 1; i > start - 1; i-- )
-			 { 
-				 if( chrHash.containsKey( i ) )
-				 {
-					 //System.out.print( window.length + ":" + ( end - i - 1 ) + ":" + i + ", " ); 
-					 window[ ( end - i - 1 ) ] = chrHash.get( i ); 
-				 }
-				 else 
-				 {
-					 
-					 window[ ( end - i - 1 ) ] = 0; 
-				 }
-			 } 
-		 
-		}
-		
-		return window; 
-	}
-	
-	public void fillPileupHash( final String inputPileup, final String inputFormat )
-	{
-		HashMap<String, HashMap<Integer, Integer>> pileupHash = new HashMap<String, HashMap<Integer,Integer>>(); 
-		
-		
-		int yValuePos = -1; 
-		if( inputFormat.equals("bedgraph") || inputFormat.equals("pileup") )
-			yValuePos = 3;
-		else if( inputFormat.equals("coverage") )
-			yValuePos = 2; 
-		
-		BufferedReader in = TextFileAccess.openFileRead( inputPileup ); 
-		try
-		{
-			String line; 
-			String[] entries; 
-			while( in.ready() )
-			{
-				line = in.readLine(); 
-				entries = line.split("\t"); 
-				
-				//System.out.println( line + "\t" + entries[ yValuePos ] ); 
-				
-				if( !pileupHash.containsKey( entries[ 0 ] ) )
-				{
-					pileupHash.put( entries[ 0 ], new HashMap<Integer, Integer>() ); 
-				}
-				//System.out.println( entries[ 0 ] + " " + entries[ 1 ] + " " + entries[ 3 ] ); 
-				pileupHash.get( entries[ 0 ] ).put( Integer.parseInt( entries[ 1 ] ), Integer.parseInt( entries[ yValuePos ] ) ); 
-			}
+			return null; 
 		}
-		catch (Exception e) 
-		{
-			System.err.println( "Unable to hash values specified in input.bedgraph/pileup." );
-			System.exit( 1 ); 
-		} 
-		
-		this.pileupHash = pileupHash; 
 	}
 	
 	/**
@@ -440,57 +59,84 @@ public class PileupWindow {
 	 */
 	public static void main(String[] args) 
 	{
-		if( args.length < 5 || args.length > 6 )
+		if( args.length < 5 || args.length > 8 )
 		{
 			final String info = "\n#######################\n" +
-					"java -jar pileupWindow -input=[bedgraph,pileup,coverage] -output=[avg,sum] -processing=[genome,perChromosome] -bins=x input.bedgraph/pileup input.BED\n" +
+					"java -jar pileupWindow -input=[bedgraph,pileup,coverage,binary] -output=[avg,sum,var,median,quantiles,totals,summary,matrix] -processing=[genome,perChromosome,streaming] -bins=x -threads=N -matrix=out.npy input.bedgraph/pileup input.BED\n" +
 					"#######################\n" + 
 					"Returns a file of the average( -output=avg ) or sum( -output=sum ) value for each position relative to the start of each input.BED entry.\n" +
+					"The mean and variance ( -output=var ) are returned as two columns. Windows are summed as soon as they are extracted, memory does not depend on the number of input.BED entries.\n" +
+					"The position wise median ( -output=median ) or 5%,25%,50%,75%,95% quantiles ( -output=quantiles ) keep all values in memory.\n" +
+					"The sum and mean of each single window ( -output=totals ) are returned as name, chromosome, start, end, sum, mean.\n" +
+					"The summary ( -output=summary ) adds the number of covered (non zero) positions. With -processing=genome or perChromosome it is looked up in a prefix sum index of the coverage, without extracting the windows.\n" +
+					"The windows themselves ( -output=matrix ) are streamed as rows of a windows x bins float32 matrix into a NumPy file ( -matrix=out.npy ), the row index into out.npy.rows (row, name, chromosome, start, end, strand).\n" +
 					"Specify if your input histogram is of bedgraph ( -input=bedgraph ), pileup ( -input=pileup ) or coverage ( -input=genomeCoverage , generated by bedtools) format \n" +
+					"A binary coverage file created by bedgraphToBinaryCoverage ( -input=binary ) is memory mapped instead of parsed. The processing option is ignored in this case.\n" +
+					"With -bins=x, long windows are read from the zoom levels of the binary file if they have been built ( bedgraphTools.CoveragePyramid input.bcov ), which approximates the full resolution result by float means.\n" +
 					"Specify if the entire genome should be processed at once ( -processing=genome ) or if it will process chromosomes sequentially ( -processing=perChromosome). This just influences the perfomance NOT the result. For large genomes the perChromosome option is recommended \n" +
+					"Coordinate sorted inputs can be processed in a single pass over both files ( -processing=streaming ). Both files have to list the chromosomes in the same order (e.g. sort -k1,1 -k2,2n).\n" +
 					"Add number of bins ( -bins=x ) if the input.BED windows are of unequal size. The output will be scaled from start to end for each window.\n" +
 					"If not specified the values will be calculated with windows aligned at starts specified in the input.BED file\n" +
+					"Add a number of threads ( -threads=N ) to process N chromosomes in parallel with -processing=perChromosome. Both files are read once, the input.bedgraph/pileup has to list each chromosome in one block. Memory is bounded by N chromosomes in flight.\n" +
 					"\n"; 
 			System.err.println( info ); 
 		}
 		else 
 		{
 			final String input = args[ 0 ].substring( args[ 0 ].indexOf("=") + 1);  
-			if( !input.equals("bedgraph") && !input.equals("pileup") && !input.equals("coverage") )
+			if( !input.equals("bedgraph") && !input.equals("pileup") && !input.equals("coverage") && !input.equals("binary") )
 			{
-				System.err.println( "Please specify an output format: Averaged value (avg) or Summed value (sum)" ); 
+				System.err.println( "Please specify an input format: bedgraph, pileup, coverage or binary" ); 
 				System.exit( 1 ); 
 			}
 			
 			final String output = args[ 1 ].substring( args[ 1 ].indexOf("=") + 1);  
-			if( !output.equals("avg") && !output.equals("sum"))
+			if( !output.equals("avg") && !output.equals("sum") && !output.equals("var") && !output.equals("median") && !output.equals("quantiles") && !output.equals("totals") && !output.equals("summary") && !output.equals("matrix") )
 			{
-				System.err.println( "Please specify an output format: Averaged value (avg) or Summed value (sum)" ); 
+				System.err.println( "Please specify an output format: Averaged value (avg), Summed value (sum), mean and variance (var), median (median), quantiles (quantiles), per window sum and mean (totals), per window sum, mean and covered positions (summary) or all windows (matrix)" ); 
 				System.exit( 1 ); 
 			}
 			
 			final String processing = args[ 2 ].substring( args[ 2 ].indexOf("=") + 1 ); 
-			if( !processing.equals("genome") && !processing.equals("perChromosome") )
+			if( !processing.equals("genome") && !processing.equals("perChromosome") && !processing.equals("streaming") )
 			{
-				System.err.println( "Please specify a processing method: Entire genome (genome) or per Chromosome (perChromosome)" ); 
+				System.err.println( "Please specify a processing method: Entire genome (genome), per Chromosome (perChromosome) or sorted single pass (streaming)" ); 
 				System.exit( 1 ); 
 			}
 			
 			int bins = -1; 
-			if( args.length == 6 )
+			int threads = 1; 
+			File matrixOutput = null; 
+			for( int i = 3; i < args.length - 2; i++ )
 			{
+				if( args[ i ].startsWith( "-matrix=" ) )
+				{
+					matrixOutput = new File( args[ i ].substring( args[ i ].indexOf("=") + 1 ) ); 
+					continue; 
+				}
+				
 				try 
 				{ 
-					bins = Integer.parseInt( args[ 3 ].substring( args[ 3 ].indexOf("=") + 1).toLowerCase() ); 
+					final int value = Integer.parseInt( args[ i ].substring( args[ i ].indexOf("=") + 1).toLowerCase() ); 
+					if( args[ i ].startsWith( "-threads" ) )
+						threads = value; 
+					else
+						bins = value; 
 				}
 				catch (Exception e) 
 				{
-					System.err.println( "Please provide the number of bins as an Integer value." );
+					System.err.println( "Please provide the number of bins and threads as an Integer value." );
 					System.exit( 1 ); 
 				}	
 			}
 			
-			new PileupWindow( input, output, processing, bins, args[ args.length - 2 ], args[ args.length - 1] ); 
+			if( output.equals("matrix") && matrixOutput == null )
+			{
+				System.err.println( "Please specify the file of the matrix output ( -matrix=out.npy )." ); 
+				System.exit( 1 ); 
+			}
+			
+			new PileupWindow( input, output, processing, bins, threads, args[ args.length - 2 ], args[ args.length - 1], matrixOutput ); 
 		}
 	}
 
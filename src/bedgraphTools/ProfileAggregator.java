@@ -0,0 +1,91 @@
+package bedgraphTools;
+
+import java.io.IOException;
+
+import outputTools.OutputWriter;
+
+/**
+ * Position wise sum ( sum ), average ( avg ) or mean and variance ( var ) over all windows.
+ */
+public class ProfileAggregator extends WindowAggregator
+{
+	protected final String outputFormat;
+	protected final WindowAccumulator accumulator;
+
+	public ProfileAggregator( final String outputFormat, final int bins )
+	{
+		super( bins );
+		this.outputFormat = outputFormat;
+		this.accumulator = new WindowAccumulator( Math.max( bins, 0 ), outputFormat.equals( "var" ) );
+	}
+
+	@Override
+	protected void add( final String[] entry, final int[] window ) { accumulator.add( window ); }
+
+	@Override
+	protected void add( final String[] entry, final float[] window ) { accumulator.add( window ); }
+
+	@Override
+	public WindowHandler createPartial() { return new ProfileAggregator( outputFormat, bins ); }
+
+	@Override
+	public void merge( final WindowHandler partial ) { accumulator.merge( ( (ProfileAggregator) partial ).accumulator ); }
+
+	/**
+	 * Print the summed or averaged values.
+	 * Scaled windows (bins) are printed as float values. The variance output ( -output=var ) prints mean and variance.
+	 */
+	@Override
+	protected void print( final OutputWriter out, final String linePrefix ) throws IOException
+	{
+		final double[] groupedWindow = accumulator.getSums();
+		for( int i = 0; i < groupedWindow.length; i++ )
+		{
+			if( outputFormat.equals( "var" ) )
+			{
+				if( bins != -1 )
+					startLine( out, linePrefix ).print( i ).tab().print( (float) accumulator.getMean( i ) ).tab().print( (float) accumulator.getVariance( i ) ).println();
+				else
+					startLine( out, linePrefix ).print( i ).tab().print( accumulator.getMean( i ) ).tab().print( accumulator.getVariance( i ) ).println();
+			}
+			else
+			{
+				double value = groupedWindow[ i ];
+				if( outputFormat.equals( "avg" ) )
+					value = accumulator.getMean( i );
+
+				if( bins != -1 )
+					startLine( out, linePrefix ).print( i ).tab().print( (float) value ).println();
+				else
+					startLine( out, linePrefix ).print( i ).tab().print( value ).println();
+			}
+		}
+	}
+
+	/**
+	 * Print the summed or averaged values of all positions as one tab separated row, e.g. of a tracks x bins matrix.
+	 * Only for sum and avg.
+	 * @param out
+	 * @throws IOException
+	 */
+	protected void printRow( final OutputWriter out ) throws IOException
+	{
+		final double[] groupedWindow = accumulator.getSums();
+		for( int i = 0; i < groupedWindow.length; i++ )
+		{
+			double value = groupedWindow[ i ];
+			if( outputFormat.equals( "avg" ) )
+				value = accumulator.getMean( i );
+
+			if( i > 0 )
+				out.tab();
+			if( bins != -1 )
+				out.print( (float) value );
+			else
+				out.print( value );
+		}
+		out.println();
+	}
+
+	public WindowAccumulator getAccumulator() { return accumulator; }
+}
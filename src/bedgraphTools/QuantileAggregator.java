@@ -0,0 +1,132 @@
+package bedgraphTools;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import outputTools.OutputWriter;
+
+/**
+ * Position wise median ( median ) or 5%, 25%, 50%, 75% and 95% quantiles ( quantiles ) over all windows.
+ * Windows shorter than a position count as 0, as for the average.
+ * Quantiles need all values, so memory grows with the number of windows times the window size (4 bytes per value).
+ */
+public class QuantileAggregator extends WindowAggregator
+{
+	public static final double[] QUANTILES = new double[] { 0.05, 0.25, 0.5, 0.75, 0.95 };
+
+	protected final String outputFormat;
+
+	//values[ i ] holds the first counts[ i ] values of position i
+	protected float[][] values = new float[ 0 ][];
+	protected int[] counts = new int[ 0 ];
+	protected int nrOfWindows = 0;
+
+	public QuantileAggregator( final String outputFormat, final int bins )
+	{
+		super( bins );
+		this.outputFormat = outputFormat;
+	}
+
+	@Override
+	protected void add( final String[] entry, final int[] window )
+	{
+		ensureSize( window.length );
+		for( int i = 0; i < window.length; i++ )
+			addValue( i, window[ i ] );
+		nrOfWindows++;
+	}
+
+	@Override
+	protected void add( final String[] entry, final float[] window )
+	{
+		ensureSize( window.length );
+		for( int i = 0; i < window.length; i++ )
+			addValue( i, window[ i ] );
+		nrOfWindows++;
+	}
+
+	protected void addValue( final int i, final float value )
+	{
+		if( counts[ i ] == values[ i ].length )
+			values[ i ] = Arrays.copyOf( values[ i ], Math.max( 16, values[ i ].length * 2 ) );
+		values[ i ][ counts[ i ]++ ] = value;
+	}
+
+	protected void ensureSize( final int size )
+	{
+		if( values.length < size )
+		{
+			final int oldSize = values.length;
+			values = Arrays.copyOf( values, size );
+			counts = Arrays.copyOf( counts, size );
+			for( int i = oldSize; i < size; i++ )
+				values[ i ] = new float[ 0 ];
+		}
+	}
+
+	@Override
+	public WindowHandler createPartial() { return new QuantileAggregator( outputFormat, bins ); }
+
+	@Override
+	public void merge( final WindowHandler partial )
+	{
+		final QuantileAggregator other = (QuantileAggregator) partial;
+		ensureSize( other.values.length );
+		for( int i = 0; i < other.values.length; i++ )
+			for( int j = 0; j < other.counts[ i ]; j++ )
+				addValue( i, other.values[ i ][ j ] );
+		nrOfWindows += other.nrOfWindows;
+	}
+
+	/**
+	 * Return the quantile q of position i, linearly interpolated between the closest ranks.
+	 * @param i
+	 * @param q
+	 * @return
+	 */
+	public double getQuantile( final int i, final double q )
+	{
+		return getQuantile( getSortedValues( i ), q );
+	}
+
+	/**
+	 * Sorted values of all windows at position i. Windows not reaching position i contribute zeros.
+	 * @param i
+	 * @return
+	 */
+	public float[] getSortedValues( final int i )
+	{
+		final float[] sorted = new float[ nrOfWindows ];
+		System.arraycopy( values[ i ], 0, sorted, 0, counts[ i ] );
+		Arrays.sort( sorted );
+		return sorted;
+	}
+
+	protected static double getQuantile( final float[] sorted, final double q )
+	{
+		final double rank = q * ( sorted.length - 1 );
+		final int low = (int) Math.floor( rank );
+		final int high = Math.min( low + 1, sorted.length - 1 );
+		return sorted[ low ] + ( rank - low ) * ( sorted[ high ] - sorted[ low ] );
+	}
+
+	@Override
+	protected void print( final OutputWriter out, final String linePrefix ) throws IOException
+	{
+		for( int i = 0; i < values.length; i++ )
+		{
+			final float[] sorted = getSortedValues( i );
+			if( outputFormat.equals("median") )
+			{
+				startLine( out, linePrefix ).print( i ).tab().print( (float) getQuantile( sorted, 0.5 ) ).println();
+			}
+			else
+			{
+				startLine( out, linePrefix ).print( i );
+				for( double q : QUANTILES )
+					out.tab().print( (float) getQuantile( sorted, q ) );
+				out.println();
+			}
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package bedgraphTools;
+
+import inputOutput.TextFileAccess;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Reads single sub bedgraphs by name from an archive written by SubBedgraphArchiveWriter.
+ * Only the index is parsed, a window is read with one seek. If a name occurs more than once the last window is returned,
+ * as its file would have replaced the earlier ones.
+ */
+public class SubBedgraphArchive
+{
+	protected final RandomAccessFile file;
+	protected final ArrayList<String> names = new ArrayList<String>();
+	protected final HashMap<String, long[]> index = new HashMap<String, long[]>();
+
+	public SubBedgraphArchive( final File archive ) throws IOException
+	{
+		this.file = new RandomAccessFile( archive, "r" );
+
+		BufferedReader in = TextFileAccess.openFileRead( archive.getPath() + SubBedgraphArchiveWriter.INDEX_SUFFIX );
+		String[] entries;
+		while( in.ready() )
+		{
+			entries = in.readLine().split("\t");
+			if( index.put( entries[ 0 ], new long[] { Long.parseLong( entries[ 1 ] ), Long.parseLong( entries[ 2 ] ) } ) == null )
+				names.add( entries[ 0 ] );
+		}
+		in.close();
+	}
+
+	public boolean contains( final String name ) { return index.containsKey( name ); }
+
+	public ArrayList<String> getNames() { return names; }
+
+	/**
+	 * Return the sub bedgraph of name as written to name.bedgraph, null if the archive does not contain it.
+	 * @param name
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] read( final String name ) throws IOException
+	{
+		final long[] location = index.get( name );
+		if( location == null )
+			return null;
+
+		final byte[] bytes = new byte[ (int) location[ 1 ] ];
+		file.seek( location[ 0 ] );
+		file.readFully( bytes );
+		return bytes;
+	}
+
+	/**
+	 * Write the sub bedgraph of name to out.
+	 * @param name
+	 * @param out
+	 * @return false if the archive does not contain name
+	 * @throws IOException
+	 */
+	public boolean write( final String name, final OutputStream out ) throws IOException
+	{
+		final byte[] bytes = read( name );
+		if( bytes == null )
+			return false;
+
+		out.write( bytes );
+		return true;
+	}
+
+	public void close() throws IOException
+	{
+		file.close();
+	}
+
+	/**
+	 * Main method used for running this script from shell
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		if( args.length < 1 )
+		{
+			final String info = "\n#######################\n" +
+					"java -cp geneArchitectureToolbox.jar bedgraphTools.SubBedgraphArchive archive [name ...]\n" +
+					"#######################\n" +
+					"Prints the sub bedgraphs of the given names from an archive written by extractSubBedGraphs -archive=archive to STDOUT.\n" +
+					"Without names, the names of all sub bedgraphs in the archive are listed.\n" +
+					"\n";
+			System.err.println( info );
+		}
+		else
+		{
+			try
+			{
+				final SubBedgraphArchive archive = new SubBedgraphArchive( new File( args[ 0 ] ) );
+				if( args.length == 1 )
+				{
+					for( final String name : archive.getNames() )
+						System.out.println( name );
+				}
+				for( int i = 1; i < args.length; i++ )
+				{
+					if( !archive.write( args[ i ], System.out ) )
+						System.err.println( "The archive does not contain " + args[ i ] );
+				}
+				System.out.flush();
+				archive.close();
+			}
+			catch (Exception e)
+			{
+				System.err.println( "Unable to read the sub bedgraph archive " + args[ 0 ] + ": " + e );
+				System.exit( 1 );
+			}
+		}
+	}
+}
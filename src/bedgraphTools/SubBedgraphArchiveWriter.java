@@ -0,0 +1,106 @@
+package bedgraphTools;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import outputTools.OutputWriter;
+
+/**
+ * Appends the sub bedgraphs of ExtractSubBedGraphs to a single archive instead of writing one file per window.
+ * The archive holds the sub bedgraphs one after another, exactly as they would be written to name.bedgraph.
+ * The index ( archive.index ) lists name, byte offset and byte length of every sub bedgraph (see SubBedgraphArchive).
+ *
+ * Windows are formatted and written by a background thread. The extracting thread only queues them and waits
+ * once QUEUE_SIZE windows are pending, so memory stays bounded.
+ */
+public class SubBedgraphArchiveWriter implements SubBedgraphWriter
+{
+	public static final int QUEUE_SIZE = 64;
+	public static final String INDEX_SUFFIX = ".index";
+
+	protected static class Window
+	{
+		final String[] entry;
+		final float[] values;
+
+		public Window( final String[] entry, final float[] values )
+		{
+			this.entry = entry;
+			this.values = values;
+		}
+	}
+
+	//Marks the end of the windows
+	protected static final Window LAST = new Window( null, null );
+
+	protected final ArrayBlockingQueue<Window> queue = new ArrayBlockingQueue<Window>( QUEUE_SIZE );
+	protected final OutputWriter out, index;
+	protected final Thread writer;
+
+	public SubBedgraphArchiveWriter( final String archive ) throws IOException
+	{
+		this.out = new OutputWriter( new FileOutputStream( archive ) );
+		this.index = new OutputWriter( new FileOutputStream( archive + INDEX_SUFFIX ) );
+		this.writer = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					Window window;
+					while( ( window = queue.take() ) != LAST )
+						write( window );
+					out.close();
+					index.close();
+				}
+				catch (Exception e)
+				{
+					System.err.println( "Cannot write to the sub bedgraph archive: " + e );
+					System.exit( 1 );
+				}
+			}
+		};
+		writer.start();
+	}
+
+	@Override
+	public void add( final String[] entry, final float[] values )
+	{
+		try
+		{
+			queue.put( new Window( entry, values ) );
+		}
+		catch (InterruptedException e)
+		{
+			System.err.println( "Interrupted while queueing the window of " + entry[ 3 ] );
+			System.exit( 1 );
+		}
+	}
+
+	protected void write( final Window window ) throws IOException
+	{
+		final long offset = out.getPosition();
+		ExtractSubBedGraphs.writeWindow( out, window.entry, window.values );
+		index.print( window.entry[ 3 ] ).tab().print( offset ).tab().print( out.getPosition() - offset ).println();
+	}
+
+	/**
+	 * Write the remaining windows and close the archive and its index.
+	 */
+	@Override
+	public void close()
+	{
+		try
+		{
+			queue.put( LAST );
+			writer.join();
+		}
+		catch (InterruptedException e)
+		{
+			System.err.println( "Interrupted while finishing the sub bedgraph archive." );
+			System.exit( 1 );
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package bedgraphTools;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes every window to its own file outputPath/name.bedgraph on a fixed number of writer threads, so opening, writing
+ * and closing the files overlaps with the extraction and with each other.
+ * At most PENDING_PER_WRITER windows per writer are queued or being written, further windows wait for a free slot.
+ * Files are written in no particular order, so window names have to be unique.
+ */
+public class SubBedgraphFileWriterPool implements SubBedgraphWriter
+{
+	public static final int PENDING_PER_WRITER = 16;
+
+	protected final String outputPath;
+	protected final ExecutorService executor;
+	protected final Semaphore pending;
+
+	/**
+	 * @param outputPath directory of the files
+	 * @param writers number of writer threads
+	 */
+	public SubBedgraphFileWriterPool( final String outputPath, final int writers )
+	{
+		this.outputPath = outputPath;
+		this.executor = Executors.newFixedThreadPool( writers );
+		this.pending = new Semaphore( writers * PENDING_PER_WRITER );
+	}
+
+	@Override
+	public void add( final String[] entry, final float[] values )
+	{
+		pending.acquireUninterruptibly();
+		executor.execute( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					ExtractSubBedGraphs.writeWindowFile( outputPath, entry, values );
+				}
+				catch (IOException e)
+				{
+					System.err.println( "Cannot write the window of " + entry[ 3 ] + ": " + e );
+					System.exit( 1 );
+				}
+				finally
+				{
+					pending.release();
+				}
+			}
+		});
+	}
+
+	@Override
+	public void close()
+	{
+		executor.shutdown();
+		try
+		{
+			executor.awaitTermination( Long.MAX_VALUE, TimeUnit.SECONDS );
+		}
+		catch (InterruptedException e)
+		{
+			System.err.println( "Interrupted while writing the sub bedgraphs." );
+			System.exit( 1 );
+		}
+	}
+}
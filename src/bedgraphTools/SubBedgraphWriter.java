@@ -0,0 +1,20 @@
+package bedgraphTools;
+
+/**
+ * Writes the windows of ExtractSubBedGraphs off the extracting thread, either into one archive (SubBedgraphArchiveWriter)
+ * or into one file per window (SubBedgraphFileWriterPool). Both bound the number of pending windows.
+ */
+public interface SubBedgraphWriter
+{
+	/**
+	 * Queue a window to be written, waits while too many windows are pending. The values must not be changed afterwards.
+	 * @param entry tab separated fields of the input.BED entry
+	 * @param values
+	 */
+	public void add( final String[] entry, final float[] values );
+
+	/**
+	 * Write all pending windows and finish.
+	 */
+	public void close();
+}
@@ -0,0 +1,18 @@
+package bedgraphTools;
+
+/**
+ * WindowHandler that only needs the total of every window. The CoverageWindowEngine passes the total and the number of
+ * covered (non zero) positions from the prefix sum index of the coverage instead of extracting the window.
+ * Windows that are extracted anyway (streaming and binary input) are still passed to addWindow.
+ */
+public interface SummaryHandler extends WindowHandler
+{
+	/**
+	 * @param entry the tab separated fields of the input.BED entry
+	 * @param sum of the integer values of the window
+	 * @param coveredBases number of positions with a non zero value
+	 */
+	public void addSummary( final String[] entry, final long sum, final int coveredBases );
+
+	public void addSummary( final String[] entry, final double sum, final int coveredBases );
+}
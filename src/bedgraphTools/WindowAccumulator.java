@@ -0,0 +1,117 @@
+package bedgraphTools;
+
+import java.util.Arrays;
+
+/**
+ * Position wise sum (and optionally sum of squares) over windows aligned at their start.
+ * Windows are added as soon as they are extracted, so memory only depends on the window size, not on the number of windows.
+ * Partial accumulators (e.g. one per chromosome) can be merged into a single one.
+ */
+public class WindowAccumulator
+{
+	protected double[] sums, sumsOfSquares;
+	protected int nrOfWindows = 0;
+
+	public WindowAccumulator()
+	{
+		this( 0, false );
+	}
+
+	/**
+	 * @param size expected window size. The accumulator grows with longer windows.
+	 * @param variance track sums of squares to report the variance
+	 */
+	public WindowAccumulator( final int size, final boolean variance )
+	{
+		this.sums = new double[ size ];
+		if( variance )
+			this.sumsOfSquares = new double[ size ];
+	}
+
+	public void add( final int[] window )
+	{
+		ensureSize( window.length );
+		for( int i = 0; i < window.length; i++ )
+			sums[ i ] += window[ i ];
+
+		if( sumsOfSquares != null )
+		{
+			for( int i = 0; i < window.length; i++ )
+				sumsOfSquares[ i ] += (double) window[ i ] * window[ i ];
+		}
+		nrOfWindows++;
+	}
+
+	public void add( final float[] window )
+	{
+		ensureSize( window.length );
+		for( int i = 0; i < window.length; i++ )
+			sums[ i ] += window[ i ];
+
+		if( sumsOfSquares != null )
+		{
+			for( int i = 0; i < window.length; i++ )
+				sumsOfSquares[ i ] += (double) window[ i ] * window[ i ];
+		}
+		nrOfWindows++;
+	}
+
+	/**
+	 * Add all windows of another accumulator to this one.
+	 * @param other
+	 */
+	public void merge( final WindowAccumulator other )
+	{
+		ensureSize( other.sums.length );
+		for( int i = 0; i < other.sums.length; i++ )
+			sums[ i ] += other.sums[ i ];
+
+		if( sumsOfSquares != null && other.sumsOfSquares != null )
+		{
+			for( int i = 0; i < other.sumsOfSquares.length; i++ )
+				sumsOfSquares[ i ] += other.sumsOfSquares[ i ];
+		}
+		nrOfWindows += other.nrOfWindows;
+	}
+
+	protected void ensureSize( final int size )
+	{
+		if( sums.length < size )
+		{
+			sums = Arrays.copyOf( sums, size );
+			if( sumsOfSquares != null )
+				sumsOfSquares = Arrays.copyOf( sumsOfSquares, size );
+		}
+	}
+
+	/**
+	 * Mean over all windows at position i. Windows shorter than i count as 0.
+	 * @param i
+	 * @return
+	 */
+	public double getMean( final int i )
+	{
+		return sums[ i ] / nrOfWindows;
+	}
+
+	/**
+	 * Sample variance over all windows at position i. Windows shorter than i count as 0.
+	 * Requires an accumulator tracking sums of squares.
+	 * @param i
+	 * @return
+	 */
+	public double getVariance( final int i )
+	{
+		if( nrOfWindows < 2 )
+			return 0;
+
+		final double variance = ( sumsOfSquares[ i ] - sums[ i ] * sums[ i ] / nrOfWindows ) / ( nrOfWindows - 1 );
+		return Math.max( 0, variance );
+	}
+
+	public boolean hasVariance() { return sumsOfSquares != null; }
+
+	public double[] getSums() { return sums; }
+	public int getNrOfWindows() { return nrOfWindows; }
+	public int size() { return sums.length; }
+}
@@ -0,0 +1,110 @@
+package bedgraphTools;
+
+import java.io.IOException;
+
+import outputTools.OutputWriter;
+
+/**
+ * WindowHandler summarising all windows into a single output, optionally after scaling each window to a number of bins.
+ * New aggregations implement add() for int and float windows, print(), createPartial() and merge().
+ */
+public abstract class WindowAggregator implements WindowHandler
+{
+	protected final int bins;
+	protected final WindowScaler scaler;
+
+	/**
+	 * @param bins number of bins windows are scaled to, -1 for windows aligned at their start
+	 */
+	public WindowAggregator( final int bins )
+	{
+		this.bins = bins;
+		this.scaler = bins == -1 ? null : new WindowScaler( bins );
+	}
+
+	/**
+	 * Create the aggregator of an output format.
+	 * @param outputFormat avg, sum, var, median, quantiles, totals or summary
+	 * @param bins
+	 * @return
+	 */
+	public static WindowAggregator create( final String outputFormat, final int bins )
+	{
+		if( outputFormat.equals("median") || outputFormat.equals("quantiles") )
+			return new QuantileAggregator( outputFormat, bins );
+		else if( outputFormat.equals("totals") )
+			return new WindowTotalsAggregator();
+		else if( outputFormat.equals("summary") )
+			return new WindowSummaryAggregator();
+		else
+			return new ProfileAggregator( outputFormat, bins );
+	}
+
+	@Override
+	public void addWindow( final String[] entry, final int[] window )
+	{
+		if( scaler == null )
+			add( entry, window );
+		else
+			add( entry, scaler.scale( window ) );
+	}
+
+	@Override
+	public void addWindow( final String[] entry, final float[] window )
+	{
+		if( scaler == null )
+			add( entry, window );
+		else
+			add( entry, scaler.scale( window ) );
+	}
+
+	/**
+	 * Add a window. Scaled windows are reused by the next call and must be copied if they are kept.
+	 */
+	protected abstract void add( final String[] entry, final int[] window );
+
+	protected abstract void add( final String[] entry, final float[] window );
+
+	/**
+	 * Print the aggregated values to System.out
+	 */
+	public void print()
+	{
+		final OutputWriter out = new OutputWriter();
+		try
+		{
+			print( out, null );
+			out.flush();
+		}
+		catch (IOException e)
+		{
+			System.err.println( "Cannot write the aggregated values: " + e );
+			System.exit( 1 );
+		}
+	}
+
+	/**
+	 * Print the aggregated values to out.
+	 * @param out
+	 * @param linePrefix printed as an additional first column of every line, e.g. the name of a track, null for none
+	 * @throws IOException
+	 */
+	protected abstract void print( final OutputWriter out, final String linePrefix ) throws IOException;
+
+	/**
+	 * Start an output line with the prefix column, if there is one.
+	 * @param out
+	 * @param linePrefix
+	 * @return out
+	 * @throws IOException
+	 */
+	protected static OutputWriter startLine( final OutputWriter out, final String linePrefix ) throws IOException
+	{
+		if( linePrefix != null )
+			out.print( linePrefix ).tab();
+		return out;
+	}
+
+	@Override
+	public int getBins() { return bins; }
+}
@@ -0,0 +1,35 @@
+package bedgraphTools;
+
+/**
+ * Receives the windows extracted by the CoverageWindowEngine, one call per input.BED entry.
+ * Windows are already reversed for entries on the minus strand. Integer coverage is passed as int[], float coverage as float[].
+ */
+public interface WindowHandler
+{
+	/**
+	 * @param entry the tab separated fields of the input.BED entry
+	 * @param window values of the window, position 0 is the 5' end of the entry
+	 */
+	public void addWindow( final String[] entry, final int[] window );
+
+	public void addWindow( final String[] entry, final float[] window );
+
+	/**
+	 * Number of bins the windows are scaled to. Such windows may be read from coarser zoom levels of the coverage.
+	 * @return -1 if every position of a window is needed
+	 */
+	public int getBins();
+
+	/**
+	 * Handler collecting the windows of a single chromosome when chromosomes are processed in parallel.
+	 * Return this if the handler is thread safe.
+	 * @return
+	 */
+	public WindowHandler createPartial();
+
+	/**
+	 * Add the windows collected by a partial handler. Partials are merged in chromosome order.
+	 * @param partial
+	 */
+	public void merge( final WindowHandler partial );
+}
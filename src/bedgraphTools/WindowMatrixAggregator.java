@@ -0,0 +1,92 @@
+package bedgraphTools;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import outputTools.NpyMatrixWriter;
+import outputTools.OutputWriter;
+
+/**
+ * Every window as one row of a windows x bins float32 matrix ( matrix ), streamed into a .npy file instead of being collapsed.
+ * The row index is written next to it ( matrix.npy.rows ): row, name, chromosome, start, end and strand of each input.BED entry.
+ * Rows are written in the order the windows are extracted, so chromosomes processed in parallel share one writer.
+ */
+public class WindowMatrixAggregator extends WindowAggregator
+{
+	protected final File output;
+	protected final NpyMatrixWriter matrix;
+	protected final OutputWriter rowIndex;
+
+	/**
+	 * @param bins number of columns, -1 if all windows have the same length
+	 * @param output .npy file
+	 * @throws IOException
+	 */
+	public WindowMatrixAggregator( final int bins, final File output ) throws IOException
+	{
+		super( bins );
+		this.output = output;
+		this.matrix = new NpyMatrixWriter( output, bins );
+		this.rowIndex = new OutputWriter( new FileOutputStream( output.getPath() + ".rows" ) );
+	}
+
+	/**
+	 * Scaling and writing share buffers, so windows of parallel chromosomes are added one at a time.
+	 */
+	@Override
+	public synchronized void addWindow( final String[] entry, final int[] window )
+	{
+		super.addWindow( entry, window );
+	}
+
+	@Override
+	public synchronized void addWindow( final String[] entry, final float[] window )
+	{
+		super.addWindow( entry, window );
+	}
+
+	@Override
+	protected void add( final String[] entry, final int[] window )
+	{
+		final float[] floatWindow = new float[ window.length ];
+		for( int i = 0; i < window.length; i++ )
+			floatWindow[ i ] = window[ i ];
+		add( entry, floatWindow );
+	}
+
+	@Override
+	protected void add( final String[] entry, final float[] window )
+	{
+		try
+		{
+			rowIndex.print( matrix.getRows() ).tab().print( entry[ 3 ] ).tab().print( entry[ 0 ] ).tab().print( entry[ 1 ] ).tab().print( entry[ 2 ] ).tab().print( entry[ 5 ] ).println();
+			matrix.writeRow( window );
+		}
+		catch (IOException e)
+		{
+			System.err.println( "Cannot write the window of " + entry[ 3 ] + " to " + output + ": " + e.getMessage() + " Please add -bins=x for windows of unequal size." );
+			System.exit( 1 );
+		}
+	}
+
+	/**
+	 * Rows are written as soon as they are added, so all threads share this aggregator.
+	 */
+	@Override
+	public WindowHandler createPartial() { return this; }
+
+	@Override
+	public void merge( final WindowHandler partial ) {}
+
+	/**
+	 * Finish the matrix file and report its shape, nothing is printed to STDOUT.
+	 */
+	@Override
+	protected void print( final OutputWriter out, final String linePrefix ) throws IOException
+	{
+		matrix.close();
+		rowIndex.close();
+		System.err.println( "Wrote a " + matrix.getRows() + " x " + matrix.getColumns() + " matrix to " + output );
+	}
+}
@@ -0,0 +1,129 @@
+package bedgraphTools;
+
+/**
+ * Scales windows of arbitrary length to a fixed number of bins without allocating per window.
+ *
+ * Windows longer than twice the number of bins are down sampled: the window is smoothed with a gaussian
+ * (sigma = sqrt( (0.5 * scaling)^2 - 0.5^2 ), mirrored at the window boundaries) and sampled at round( bin * scaling ).
+ * Shorter windows are linearly interpolated at bin * scaling, positions behind the window end count as 0.
+ * This reproduces imglib's DownSample( image, bins, 0.5, 0.5 ) and LinearInterpolator used before.
+ * The smoothing is only evaluated at the sampled positions.
+ *
+ * The returned array is reused by the next call. A WindowScaler is not thread safe, use one per thread.
+ */
+public class WindowScaler
+{
+	protected static final double SOURCE_SIGMA = 0.5;
+	protected static final double TARGET_SIGMA = 0.5;
+
+	protected final int bins;
+	protected final float[] scaled;
+	protected float[] values = new float[ 0 ];
+
+	//Gaussian kernel of the last down sampled window length
+	protected int kernelLength = -1;
+	protected double[] kernel;
+
+	public WindowScaler( final int bins )
+	{
+		this.bins = bins;
+		this.scaled = new float[ bins ];
+	}
+
+	public float[] scale( final int[] window )
+	{
+		if( values.length < window.length )
+			values = new float[ window.length ];
+		for( int i = 0; i < window.length; i++ )
+			values[ i ] = window[ i ];
+
+		return scale( values, window.length );
+	}
+
+	public float[] scale( final float[] window )
+	{
+		return scale( window, window.length );
+	}
+
+	/**
+	 * Scale the first length values of window to the number of bins.
+	 * @param window
+	 * @param length
+	 * @return the scaled window, reused by the next call
+	 */
+	public float[] scale( final float[] window, final int length )
+	{
+		if( length == bins )
+			System.arraycopy( window, 0, scaled, 0, bins );
+		else if( length > bins * 2 )
+			scaleDown( window, length );
+		else
+			scaleUp( window, length );
+
+		return scaled;
+	}
+
+	protected void scaleDown( final float[] window, final int length )
+	{
+		final float scaling = (float) length / (float) bins;
+		if( kernelLength != length )
+		{
+			final double s = TARGET_SIGMA * scaling;
+			kernel = GaussianKernel.createGaussianKernel1DDouble( Math.sqrt( s * s - SOURCE_SIGMA * SOURCE_SIGMA ), true );
+			kernelLength = length;
+		}
+
+		final int radius = kernel.length / 2;
+		final int period = 2 * length - 2;
+		for( int bin = 0; bin < bins; bin++ )
+		{
+			final int center = Math.round( bin * scaling );
+
+			double sum = 0;
+			if( center - radius >= 0 && center + radius < length )
+			{
+				for( int k = 0, pos = center - radius; k < kernel.length; k++, pos++ )
+					sum += kernel[ k ] * window[ pos ];
+			}
+			else
+			{
+				for( int k = 0; k < kernel.length; k++ )
+					sum += kernel[ k ] * window[ mirror( center - radius + k, length, period ) ];
+			}
+			scaled[ bin ] = (float) sum;
+		}
+	}
+
+	/**
+	 * Mirror a position at the window boundaries without repeating the boundary value (-1 -> 1, length -> length - 2).
+	 */
+	protected static int mirror( int pos, final int length, final int period )
+	{
+		if( period == 0 )
+			return 0;
+
+		if( pos < 0 )
+			pos = -pos;
+		pos %= period;
+		if( pos >= length )
+			pos = period - pos;
+		return pos;
+	}
+
+	protected void scaleUp( final float[] window, final int length )
+	{
+		final double scalingFactor = (double) length / (double) bins;
+		for( int bin = 0; bin < bins; bin++ )
+		{
+			final float pos = (float) ( bin * scalingFactor );
+			final int x = (int) pos;
+			final float t = pos - x;
+
+			final float left = x < length ? window[ x ] : 0f;
+			final float right = x + 1 < length ? window[ x + 1 ] : 0f;
+			scaled[ bin ] = left * ( 1f - t ) + right * t;
+		}
+	}
+
+	public int getBins() { return bins; }
+}
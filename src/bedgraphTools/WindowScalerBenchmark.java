@@ -0,0 +1,167 @@
+package bedgraphTools;
+
+import java.util.Random;
+
+import mpicbg.imglib.algorithm.gauss.DownSample;
+import mpicbg.imglib.container.array.ArrayContainerFactory;
+import mpicbg.imglib.cursor.Cursor;
+import mpicbg.imglib.image.Image;
+import mpicbg.imglib.image.ImageFactory;
+import mpicbg.imglib.interpolation.Interpolator;
+import mpicbg.imglib.interpolation.linear.LinearInterpolatorFactory;
+import mpicbg.imglib.outofbounds.OutOfBoundsStrategyValueFactory;
+import mpicbg.imglib.type.numeric.real.FloatType;
+
+/**
+ * Compares the throughput (windows per second) of WindowScaler with the former imglib based scaling of PileupWindow,
+ * and reports the largest difference between both results.
+ */
+public class WindowScalerBenchmark
+{
+	public WindowScalerBenchmark( final int nrOfWindows, final int windowSize, final int bins )
+	{
+		//Random integer coverage windows, window sizes vary by +-25%
+		final Random random = new Random( 42 );
+		final int[][] windows = new int[ nrOfWindows ][];
+		for( int w = 0; w < nrOfWindows; w++ )
+		{
+			windows[ w ] = new int[ Math.max( 1, windowSize * 3 / 4 + random.nextInt( windowSize / 2 + 1 ) ) ];
+			for( int i = 0; i < windows[ w ].length; i++ )
+				windows[ w ][ i ] = random.nextInt( 100 );
+		}
+
+		//Warm up both implementations before timing
+		final WindowScaler scaler = new WindowScaler( bins );
+		for( int w = 0; w < Math.min( 1000, nrOfWindows ); w++ )
+		{
+			scaler.scale( windows[ w ] );
+			scaleImglib( windows[ w ], bins );
+		}
+
+		double maxDifference = 0;
+		double maxValue = 0;
+		long time = System.nanoTime();
+		final float[][] reference = new float[ nrOfWindows ][];
+		for( int w = 0; w < nrOfWindows; w++ )
+			reference[ w ] = scaleImglib( windows[ w ], bins );
+		final double imglibSeconds = ( System.nanoTime() - time ) / 1e9;
+
+		time = System.nanoTime();
+		double checksum = 0;
+		for( int w = 0; w < nrOfWindows; w++ )
+			checksum += scaler.scale( windows[ w ] )[ 0 ];
+		final double scalerSeconds = ( System.nanoTime() - time ) / 1e9;
+
+		for( int w = 0; w < nrOfWindows; w++ )
+		{
+			final float[] scaled = scaler.scale( windows[ w ] );
+			for( int i = 0; i < bins; i++ )
+			{
+				maxDifference = Math.max( maxDifference, Math.abs( scaled[ i ] - reference[ w ][ i ] ) );
+				maxValue = Math.max( maxValue, Math.abs( reference[ w ][ i ] ) );
+			}
+		}
+
+		System.out.println( "Windows: " + nrOfWindows + " of size ~" + windowSize + " scaled to " + bins + " bins" );
+		System.out.println( "imglib\t" + (long) ( nrOfWindows / imglibSeconds ) + " windows/s" );
+		System.out.println( "WindowScaler\t" + (long) ( nrOfWindows / scalerSeconds ) + " windows/s" );
+		System.out.println( "Max absolute difference\t" + maxDifference + " (max value " + maxValue + ")" );
+		System.err.println( "Checksum " + checksum );
+	}
+
+	/**
+	 * Former imglib based scaling of PileupWindow.
+	 */
+	public static float[] scaleImglib( final int[] originalWindow, final int bins )
+	{
+		if( originalWindow.length == bins )
+		{
+			final float[] scaledWindow = new float[ bins ];
+			for( int i = 0; i < bins; i++ )
+				scaledWindow[ i ] = (float) originalWindow[ i ];
+			return scaledWindow;
+		}
+		else if( originalWindow.length > bins * 2 )
+		{
+			final DownSample<FloatType> ds = new DownSample<FloatType>( intArrayToFloatImage( originalWindow ), new int[] { bins }, 0.5f, 0.5f );
+			ds.process();
+			return imageToArray( ds.getResult() );
+		}
+		else
+		{
+			final ImageFactory<FloatType> factory = new ImageFactory<FloatType>( new FloatType(), new ArrayContainerFactory() );
+			final Image<FloatType> scaledTrace = factory.createImage( new int[] { bins } );
+			final Image<FloatType> originalImage = intArrayToFloatImage( originalWindow );
+			final double scalingFactor = (double) originalImage.getDimension( 0 ) / (double) scaledTrace.getDimension( 0 );
+			final Cursor<FloatType> scaledTraceCursor = scaledTrace.createCursor();
+			final Interpolator<FloatType> interpolator = originalImage.createInterpolator( new LinearInterpolatorFactory<FloatType>( new OutOfBoundsStrategyValueFactory<FloatType>() ) );
+
+			int cursorPos = -1;
+			final float[] temp = new float[ 1 ];
+			while( scaledTraceCursor.hasNext() )
+			{
+				scaledTraceCursor.fwd();
+				cursorPos++;
+				temp[ 0 ] = (float) ( cursorPos * scalingFactor );
+				interpolator.setPosition( temp );
+				scaledTraceCursor.getType().set( interpolator.getType().get() );
+			}
+			return imageToArray( scaledTrace );
+		}
+	}
+
+	public static float[] imageToArray( final Image<FloatType> image )
+	{
+		final float[] array = new float[ image.getDimension( 0 ) ];
+		final Cursor<FloatType> cursor = image.createCursor();
+		int x = -1;
+		while( cursor.hasNext() )
+		{
+			cursor.fwd();
+			x++;
+			array[ x ] = cursor.getType().get();
+		}
+		return array;
+	}
+
+	public static Image<FloatType> intArrayToFloatImage( final int[] intArray )
+	{
+		final ImageFactory<FloatType> factory = new ImageFactory<FloatType>( new FloatType(), new ArrayContainerFactory() );
+		final Image<FloatType> image = factory.createImage( new int[] { intArray.length } );
+		final Cursor<FloatType> cursor = image.createCursor();
+		int arrayPos = -1;
+		while( cursor.hasNext() )
+		{
+			cursor.fwd();
+			arrayPos++;
+			cursor.getType().set( (float) intArray[ arrayPos ] );
+		}
+		return image;
+	}
+
+	/**
+	 * Main method used for running this script from shell
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		if( args.length != 3 )
+		{
+			final String info = "\n#######################\n" +
+					"java -cp geneArchitectureToolbox.jar bedgraphTools.WindowScalerBenchmark -windows=N -size=x -bins=y\n" +
+					"#######################\n" +
+					"Scales N random windows of about x positions to y bins with imglib and with WindowScaler.\n" +
+					"Prints the throughput of both in windows per second and the largest difference of the results.\n" +
+					"\n";
+			System.err.println( info );
+		}
+		else
+		{
+			final int nrOfWindows = Integer.parseInt( args[ 0 ].substring( args[ 0 ].indexOf("=") + 1 ) );
+			final int windowSize = Integer.parseInt( args[ 1 ].substring( args[ 1 ].indexOf("=") + 1 ) );
+			final int bins = Integer.parseInt( args[ 2 ].substring( args[ 2 ].indexOf("=") + 1 ) );
+
+			new WindowScalerBenchmark( nrOfWindows, windowSize, bins );
+		}
+	}
+}
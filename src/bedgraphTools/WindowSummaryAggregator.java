@@ -0,0 +1,58 @@
+package bedgraphTools;
+
+/**
+ * Total, mean and number of covered (non zero) positions of every single window ( summary ):
+ * name, chromosome, start, end, sum, mean and covered bases per input.BED entry.
+ * Hashed coverage is summarised from its prefix sum index, without extracting the windows.
+ */
+public class WindowSummaryAggregator extends WindowTotalsAggregator implements SummaryHandler
+{
+	@Override
+	protected void add( final String[] entry, final int[] window )
+	{
+		long sum = 0;
+		int coveredBases = 0;
+		for( int i = 0; i < window.length; i++ )
+		{
+			sum += window[ i ];
+			if( window[ i ] != 0 )
+				coveredBases++;
+		}
+		addSummary( entry, sum, coveredBases );
+	}
+
+	@Override
+	protected void add( final String[] entry, final float[] window )
+	{
+		double sum = 0;
+		int coveredBases = 0;
+		for( int i = 0; i < window.length; i++ )
+		{
+			sum += window[ i ];
+			if( window[ i ] != 0 )
+				coveredBases++;
+		}
+		addSummary( entry, sum, coveredBases );
+	}
+
+	@Override
+	public void addSummary( final String[] entry, final long sum, final int coveredBases )
+	{
+		addLine( entry, Long.toString( sum ), mean( entry, sum ) + "\t" + coveredBases );
+	}
+
+	@Override
+	public void addSummary( final String[] entry, final double sum, final int coveredBases )
+	{
+		addLine( entry, Double.toString( sum ), mean( entry, sum ) + "\t" + coveredBases );
+	}
+
+	protected static double mean( final String[] entry, final double sum )
+	{
+		final int length = Integer.parseInt( entry[ 2 ] ) - Integer.parseInt( entry[ 1 ] );
+		return length <= 0 ? 0 : sum / length;
+	}
+
+	@Override
+	public WindowHandler createPartial() { return new WindowSummaryAggregator(); }
+}
@@ -0,0 +1,62 @@
+package bedgraphTools;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import outputTools.OutputWriter;
+
+/**
+ * Sum and mean of every single window ( totals ): name, chromosome, start, end, sum and mean per input.BED entry.
+ * Windows are never scaled. Entries are printed in the order they were processed, which is the input.BED order
+ * for -processing=genome and grouped by chromosome otherwise.
+ */
+public class WindowTotalsAggregator extends WindowAggregator
+{
+	protected final ArrayList<String> lines = new ArrayList<String>();
+
+	public WindowTotalsAggregator()
+	{
+		super( -1 );
+	}
+
+	@Override
+	protected void add( final String[] entry, final int[] window )
+	{
+		long sum = 0;
+		for( int i = 0; i < window.length; i++ )
+			sum += window[ i ];
+		addLine( entry, Long.toString( sum ), window.length == 0 ? 0 : (double) sum / window.length );
+	}
+
+	@Override
+	protected void add( final String[] entry, final float[] window )
+	{
+		double sum = 0;
+		for( int i = 0; i < window.length; i++ )
+			sum += window[ i ];
+		addLine( entry, Double.toString( sum ), window.length == 0 ? 0 : sum / window.length );
+	}
+
+	protected void addLine( final String[] entry, final String sum, final double mean )
+	{
+		addLine( entry, sum, Double.toString( mean ) );
+	}
+
+	protected void addLine( final String[] entry, final String sum, final String mean )
+	{
+		lines.add( entry[ 3 ] + "\t" + entry[ 0 ] + "\t" + entry[ 1 ] + "\t" + entry[ 2 ] + "\t" + sum + "\t" + mean );
+	}
+
+	@Override
+	public WindowHandler createPartial() { return new WindowTotalsAggregator(); }
+
+	@Override
+	public void merge( final WindowHandler partial ) { lines.addAll( ( (WindowTotalsAggregator) partial ).lines ); }
+
+	@Override
+	protected void print( final OutputWriter out, final String linePrefix ) throws IOException
+	{
+		for( String line : lines )
+			startLine( out, linePrefix ).println( line );
+	}
+}
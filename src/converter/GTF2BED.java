@@ -12,6 +12,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 
+import outputTools.OutputWriter;
+
 public class GTF2BED 
 {
 	public static String defaultSortId = "transcript_id";
@@ -57,11 +59,14 @@ public class GTF2BED
 	 * Write the contents of the list BED-formatted into stout.
 	 * 
 	 * @param list - the {@link List} with {@link Transcript}s
+	 * @throws IOException - if stdout is not writable
 	 */
-	public static void writeBED( final List< Transcript > list, final boolean fpkm )
+	public static void writeBED( final List< Transcript > list, final boolean fpkm ) throws IOException
 	{
+		final OutputWriter out = new OutputWriter();
 		for ( final Transcript transcript : list )
-			System.out.println( transcript.assembleBEDString( fpkm ) );
+			out.println( transcript.assembleBEDString( fpkm ) );
+		out.flush();
 	}
 	
 	/**
@@ -7,11 +7,14 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 
+import outputTools.OutputWriter;
+
 public class ExtendBED 
 {
 	private BufferedReader in; 
 	private int extUp, extDown; 
 	private String idAppend; 
+	private final OutputWriter out = new OutputWriter(); 
 	
 	
 	public ExtendBED( final int extUp, final int extDown, final File fileIn )
@@ -28,8 +31,9 @@ public class ExtendBED
 		while( in.ready() )
 		{
 			currentBed = new BEDentry( in.readLine() );	 
-			System.out.println( extendBed( currentBed ) ); 
+			out.println( extendBed( currentBed ) ); 
 		}
+		out.flush(); 
 	}
 	
 	/**
@@ -2,12 +2,16 @@ package geneArchitectureToolbox;
 
 import inputOutput.TextFileAccess;
 import java.io.BufferedReader;
+import java.io.IOException;
+
+import outputTools.OutputWriter;
 
 import array.tools.*;
 
 public class FilterBEDEntryOnLength {
 
 	public int minLength, maxLength; 
+	protected final OutputWriter out = new OutputWriter(); 
 	
 	/**
 	 * Main class 
@@ -49,6 +53,7 @@ public class FilterBEDEntryOnLength {
 				entries = line.split("\t");  
 				filter( entries );  
 			}
+			out.flush(); 
 		}
 		catch (Exception e) 
 		{
@@ -62,14 +67,14 @@ public class FilterBEDEntryOnLength {
 	 * Method to filter BED entry (row) on length. 
 	 * @param entries String[] holding the fields of a single BED entry (row). 
 	 */
-	public void filter( String[] entries )
+	public void filter( String[] entries ) throws IOException
 	{	
 		// Calculate length of current entry  
 		final int length = Integer.parseInt( entries[ 2 ] ) - Integer.parseInt( entries[ 1 ] ); 
 		
 		// Print BED entry to STDOUT if matching the length criteria
 		if( length >= minLength && length <= maxLength )
-			System.out.println( StringArrayTools.arrayToString( entries ) );
+			out.println( StringArrayTools.arrayToString( entries ) );
 	}
 
 	
@@ -2,13 +2,17 @@ package geneArchitectureToolbox;
 
 import inputOutput.TextFileAccess;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.HashSet;
 
+import outputTools.OutputWriter;
+
 import array.tools.StringArrayTools;
 
 public class FilterBEDOnIDs {
 
 	public HashSet<String> idHash; 
+	protected final OutputWriter out = new OutputWriter(); 
 	
 	public FilterBEDOnIDs( final String inputBED, final String idFile )
 	{
@@ -70,6 +74,7 @@ public class FilterBEDOnIDs {
 				entries = in.readLine().split("\t");  
 				filter( entries );  
 			}
+			out.flush(); 
 		}
 		catch (Exception e) 
 		{
@@ -83,10 +88,10 @@ public class FilterBEDOnIDs {
 	 * This method takes a BED entry and prints it to STDOUT only if it ID is contained in the ID HashSet.
 	 * @param entries String[] of the fields of one BED file. 
 	 */
-	public void filter( String[] entries )
+	public void filter( String[] entries ) throws IOException
 	{	  
 		if( this.idHash.contains( entries[ 3 ] ) )
-			System.out.println( StringArrayTools.arrayToString( entries ) ); 
+			out.println( StringArrayTools.arrayToString( entries ) ); 
 	}
 	
 	public static void main(String[] args) 
@@ -3,13 +3,17 @@ package geneArchitectureToolbox;
 import inputOutput.TextFileAccess;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.ArrayList;
 
+import outputTools.OutputWriter;
+
 import array.tools.StringArrayTools;
 
 public class FilterExonsOnPosition {
 
 	public int exonPos; 
+	protected final OutputWriter out = new OutputWriter(); 
 	
 	/**
 	 * @param exonPos Integer defining the exon position relative to start (positive) or end (negative)
@@ -69,6 +73,7 @@ public class FilterExonsOnPosition {
 				
 				previousId = currentId; 
 			}
+			out.flush(); 
 		}
 		catch (Exception e) 
 		{
@@ -82,7 +87,7 @@ public class FilterExonsOnPosition {
 	 * This method filters an ArrayList of exons on position. 
 	 * @param exons ArrayList<String[]> holding a set of BED entries split by tab. 
 	 */
-	public void filter( ArrayList<String[]> exons )
+	public void filter( ArrayList<String[]> exons ) throws IOException
 	{	
 		// Check if the desired relative position of the exon is available in the transcript. 
 		if( exons.size() >= Math.sqrt( Math.pow(exonPos, 2) ) )
@@ -96,24 +101,24 @@ public class FilterExonsOnPosition {
 				{
 					String[] exon = exons.get( exonPos - 1 ); 
 					if( !exon[ 3 ].contains("Exon1_") )
-						System.out.println( StringArrayTools.arrayToString( exon ) ); 
+						out.println( StringArrayTools.arrayToString( exon ) ); 
 						
-					System.out.println( StringArrayTools.arrayToString( exons.get( exonPos - 1) ) );
+					out.println( StringArrayTools.arrayToString( exons.get( exonPos - 1) ) );
 				}
 				else 
 				{
-					System.out.println ( StringArrayTools.arrayToString( exons.get( exons.size() + exonPos ) ) ); 
+					out.println( StringArrayTools.arrayToString( exons.get( exons.size() + exonPos ) ) ); 
 				}
 			}
 			else
 			{	
 				if( exonPos > 0 )
 				{
-					System.out.println( StringArrayTools.arrayToString( exons.get( exons.size() - exonPos ) ) ); 
+					out.println( StringArrayTools.arrayToString( exons.get( exons.size() - exonPos ) ) ); 
 				}
 				else
 				{
-					System.out.println( StringArrayTools.arrayToString( exons.get(  - ( exonPos + 1 ) ) ) );
+					out.println( StringArrayTools.arrayToString( exons.get(  - ( exonPos + 1 ) ) ) );
 				}
 				
 			}
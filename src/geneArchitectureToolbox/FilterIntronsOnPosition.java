@@ -3,13 +3,17 @@ package geneArchitectureToolbox;
 import inputOutput.TextFileAccess;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.ArrayList;
 
+import outputTools.OutputWriter;
+
 import array.tools.StringArrayTools;
 
 public class FilterIntronsOnPosition {
 
 	public int intronPos; 
+	protected final OutputWriter out = new OutputWriter(); 
 	
 	/**
 	 * @param intronPos Integer defining the intron position relative to start (positive) or end (negative)
@@ -69,6 +73,7 @@ public class FilterIntronsOnPosition {
 				
 				previousId = currentId; 
 			}
+			out.flush(); 
 		}
 		catch (Exception e) 
 		{
@@ -82,7 +87,7 @@ public class FilterIntronsOnPosition {
 	 * This method filters an ArrayList of introns on position. 
 	 * @param introns ArrayList<String[]> holding a set of BED entries split by tab. 
 	 */
-	public void filter( ArrayList<String[]> introns )
+	public void filter( ArrayList<String[]> introns ) throws IOException
 	{	
 		// Check if the desired relative position of the intron is available in the transcript.
 		if( introns.size() >= Math.sqrt( Math.pow(intronPos, 2) ) )
@@ -96,24 +101,24 @@ public class FilterIntronsOnPosition {
 				{
 					String[] exon = introns.get( intronPos - 1 ); 
 					if( !exon[ 3 ].contains("Exon1_") )
-						System.out.println( StringArrayTools.arrayToString( exon ) ); 
+						out.println( StringArrayTools.arrayToString( exon ) ); 
 						
-					System.out.println( StringArrayTools.arrayToString( introns.get( intronPos - 1) ) );
+					out.println( StringArrayTools.arrayToString( introns.get( intronPos - 1) ) );
 				}
 				else 
 				{
-					System.out.println ( StringArrayTools.arrayToString( introns.get( introns.size() + intronPos ) ) ); 
+					out.println( StringArrayTools.arrayToString( introns.get( introns.size() + intronPos ) ) ); 
 				}
 			}
 			else
 			{	
 				if( intronPos > 0 )
 				{ 
-					System.out.println( StringArrayTools.arrayToString( introns.get( introns.size() - intronPos ) ) ); 
+					out.println( StringArrayTools.arrayToString( introns.get( introns.size() - intronPos ) ) ); 
 				}
 				else
 				{
-					System.out.println( StringArrayTools.arrayToString( introns.get(  - ( intronPos + 1 ) ) ) );
+					out.println( StringArrayTools.arrayToString( introns.get(  - ( intronPos + 1 ) ) ) );
 				}
 				
 			}
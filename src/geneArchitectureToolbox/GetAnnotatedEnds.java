@@ -9,6 +9,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 
+import outputTools.OutputWriter;
+
 import array.tools.ArrayListIntegerTools;
 
 /**
@@ -24,6 +26,7 @@ public class GetAnnotatedEnds {
 	
 	private File gffFile; 
 	private ExonCollection exonCollection; 
+	private final OutputWriter out = new OutputWriter(); 
 	
 	public GetAnnotatedEnds( final File gffFile )
 	{
@@ -43,7 +46,7 @@ public class GetAnnotatedEnds {
 	 * 1. Group exons in transcripts in genes. 
 	 * 2. Extract transcript ends. 
 	 */
-	public void analyze() 
+	public void analyze() throws IOException
 	{
 		ArrayList<ArrayList<ExonGroup>> genes = getExonCollection().getGenes();
 		String name; 
@@ -57,8 +60,9 @@ public class GetAnnotatedEnds {
 			chrId = getChrId( gene ); 
 			ends = getAnnotatedEnds( gene ); 
 			 
-			System.out.println( name + "," + strand + "," + chrId + "," + ArrayListIntegerTools.arrayListToString(ends, ";") ); 
+			out.print( name ).print( ',' ).print( strand ).print( ',' ).print( chrId ).print( ',' ).println( ArrayListIntegerTools.arrayListToString(ends, ";") ); 
 		}
+		out.flush(); 
 	}
 	
 	/*
@@ -1,10 +1,13 @@
 package geneArchitectureToolbox;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collections;
 
+import outputTools.OutputWriter;
+
 import array.tools.StringArrayTools;
 /**
  * 
@@ -15,6 +18,7 @@ public class GetBidirectionalTranscriptPairs
 {
 	public int maxDistance; 
 	public ArrayList<String[]> entries; 
+	protected final OutputWriter out = new OutputWriter(); 
 	
 	/**
 	 * @param maxDistance Integer defining the maximal distance between two adjacent, bidirectional TSSs
@@ -31,7 +35,16 @@ public class GetBidirectionalTranscriptPairs
 		Collections.sort(this.entries, new BEDComparatorByPos() );
 		
 		// Find and print pairs
-		printPairs( this.entries ); 
+		try
+		{
+			printPairs( this.entries ); 
+			out.flush(); 
+		}
+		catch (IOException e) 
+		{
+			System.err.println( "Unable to print BED entry pairs. " + e );
+			System.exit( 1 ); 
+		}
 	}
 	
 	/**
@@ -70,7 +83,7 @@ public class GetBidirectionalTranscriptPairs
 	 * 
 	 * @param entries
 	 */
-	public void printPairs( ArrayList<String[]> entries )
+	public void printPairs( ArrayList<String[]> entries ) throws IOException
 	{
 		for( int i = 0; i < entries.size() - 1; ++i )
 		{ 
@@ -109,7 +122,7 @@ public class GetBidirectionalTranscriptPairs
 				// Print both BED files separated by ';' if their TSS are closer or equally spaced as given in the max distance variable.
 				if( distance <= this.maxDistance && distance >= 0 )
 				{
-					System.out.println( StringArrayTools.arrayToString( current ) + ";" + StringArrayTools.arrayToString( next ) ); 
+					out.print( StringArrayTools.arrayToString( current ) ).print( ';' ).println( StringArrayTools.arrayToString( next ) ); 
 				}
 			}
 			
@@ -2,11 +2,15 @@ package geneArchitectureToolbox;
 
 import inputOutput.TextFileAccess;
 import java.io.BufferedReader;
+import java.io.IOException;
+
+import outputTools.OutputWriter;
 
 
 public class GetExons 
 {
 	public int rangeUp, rangeDo; 
+	protected final OutputWriter out = new OutputWriter(); 
 	
 	/**
 	 * @param rangeUp Integer defining number of nucleotide the exon will be extended upstream
@@ -45,6 +49,7 @@ public class GetExons
 				entries = line.split("\t");  
 				printExons( entries );  					
 			}
+			out.flush(); 
 		}
 		catch (Exception e) 
 		{
@@ -60,7 +65,7 @@ public class GetExons
 	 * This method extracts all exons from a given BED entry and prints a BED entry for each exon to STDOUT 
 	 * @param entries String[] holding the fields of a single BED entry (row).
 	 */
-	public void printExons( final String[] entries )
+	public void printExons( final String[] entries ) throws IOException
 	{ 
 		//Extract String[] holding start values (blockStart) and length (blockSize) of all exons.  
 		final String[] blockStart = entries[ 11 ].split(",");
@@ -93,9 +98,8 @@ public class GetExons
 			}
 			
 			//Print new BED entry for each exon. Each Exon ID is derived from the transcript ID followed by "_Exon" the exon count, followed by "_Up" the extension upstream, followed by "_Do" the extension Downstream. 
-			String bedEntry = entries[ 0 ] + "\t" + startExon + "\t" + endExon + "\t" + entries[ 3 ] + "_Exon" + ( i + 1) + "_Up" + rangeUp + "_Do" + rangeDo + "\t";
-			bedEntry += entries[ 4 ] + "\t" + entries[ 5 ] + "\t" + start + "\t" + end + "\t" + entries[ 8 ] + "\t" + 1 + "\t" + (endExon - startExon ) + "\t" + 0; 
-			System.out.println( bedEntry ); 			
+			out.print( entries[ 0 ] ).tab().print( startExon ).tab().print( endExon ).tab().print( entries[ 3 ] ).print( "_Exon" ).print( i + 1 ).print( "_Up" ).print( rangeUp ).print( "_Do" ).print( rangeDo ).tab(); 
+			out.print( entries[ 4 ] ).tab().print( entries[ 5 ] ).tab().print( start ).tab().print( end ).tab().print( entries[ 8 ] ).tab().print( 1 ).tab().print( endExon - startExon ).tab().print( 0 ).println(); 			
 		}
 	}
 	
@@ -2,10 +2,14 @@ package geneArchitectureToolbox;
 
 import inputOutput.TextFileAccess;
 import java.io.BufferedReader;
+import java.io.IOException;
+
+import outputTools.OutputWriter;
 
 public class GetIntrons 
 {
 	public int rangeUp, rangeDo; 
+	protected final OutputWriter out = new OutputWriter(); 
 	
 	/**
 	 * @param rangeUp Integer defining number of nucleotide the intron will be extended upstream
@@ -44,6 +48,7 @@ public class GetIntrons
 				entries = line.split("\t");  
 				printIntrons( entries );  					
 			}
+			out.flush(); 
 		}
 		catch (Exception e) 
 		{
@@ -59,7 +64,7 @@ public class GetIntrons
 	 * This method extracts all introns from a given BED entry and prints a BED entry for each intron to STDOUT 
 	 * @param entries String[] holding the fields of a single BED entry (row).
 	 */
-	public void printIntrons( final String[] entries )
+	public void printIntrons( final String[] entries ) throws IOException
 	{ 
 		// Check if transcript is intron containing (Exon >= 2). 
 		final int exonCount = Integer.parseInt( entries[ 9 ] ); 
@@ -96,9 +101,8 @@ public class GetIntrons
 				}
 				
 				//Print new BED entry for each intron. Each Intron ID is derived from the transcript ID followed by "_Intron" the intron count, followed by "_Up" the extension upstream, followed by "_Do" the extension Downstream.
-				String bedEntry = entries[ 0 ] + "\t" + startIntron + "\t" + endIntron + "\t" + entries[ 3 ] + "_Intron" + ( i + 1) + "_Up" + rangeUp + "_Do" + rangeDo + "\t";
-				bedEntry += entries[ 4 ] + "\t" + entries[ 5 ] + "\t" + start + "\t" + end + "\t" + entries[ 8 ] + "\t" + 1 + "\t" + (endIntron - startIntron ) + "\t" + 0; 
-				System.out.println( bedEntry ); 			
+				out.print( entries[ 0 ] ).tab().print( startIntron ).tab().print( endIntron ).tab().print( entries[ 3 ] ).print( "_Intron" ).print( i + 1 ).print( "_Up" ).print( rangeUp ).print( "_Do" ).print( rangeDo ).tab(); 
+				out.print( entries[ 4 ] ).tab().print( entries[ 5 ] ).tab().print( start ).tab().print( end ).tab().print( entries[ 8 ] ).tab().print( 1 ).tab().print( endIntron - startIntron ).tab().print( 0 ).println(); 			
 			}			
 		}
 	}
@@ -3,11 +3,15 @@ package geneArchitectureToolbox;
 import inputOutput.TextFileAccess;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+
+import outputTools.OutputWriter;
 
 public class GetTSSorPolyASite {
 
 	public String feature; 
 	public int rangeUp, rangeDo; 
+	protected final OutputWriter out = new OutputWriter(); 
 	
 	public GetTSSorPolyASite( final String feature, final int rangeUp, final int rangeDo, final String bedFile )
 	{
@@ -34,6 +38,7 @@ public class GetTSSorPolyASite {
 				printFeature( entries );  					
 			
 			}
+			out.flush(); 
 		}
 		catch (Exception e) 
 		{
@@ -44,7 +49,7 @@ public class GetTSSorPolyASite {
 		System.exit( 0 ); 
 	}
 	
-	public void printFeature( final String[] entries )
+	public void printFeature( final String[] entries ) throws IOException
 	{
 		int featureStart = -1; 
 		int featureEnd = -1;
@@ -86,7 +91,7 @@ public class GetTSSorPolyASite {
 		bedEntry += entries[ 4 ] + "\t" + entries[ 5 ];
 		if( entries.length > 6 )
 			bedEntry += "\t" + feature + "\t" + (feature + 1) + "\t" + entries[ 8 ] + "\t" + 1 + "\t" + (featureEnd - featureStart ) + "\t" + 0; 
-		System.out.println( bedEntry );
+		out.println( bedEntry );
 	}
 	
 	
@@ -0,0 +1,77 @@
+package gffFiles;
+
+import inputOutput.TextFileAccess;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * All entries of a BED file, parsed once and partitioned by chromosome. The entries of each chromosome are sorted by start,
+ * entries with the same start keep their order in the file.
+ */
+public class BEDIntervalIndex
+{
+	protected static final BEDentry[] EMPTY = new BEDentry[ 0 ];
+
+	protected final HashMap<String, BEDentry[]> chromosomes = new HashMap<String, BEDentry[]>();
+	protected int size = 0;
+
+	public BEDIntervalIndex( final File bedFile ) throws IOException
+	{
+		final HashMap<String, ArrayList<BEDentry>> entries = new HashMap<String, ArrayList<BEDentry>>();
+
+		BufferedReader in = TextFileAccess.openFileRead( bedFile );
+		while( in.ready() )
+		{
+			final BEDentry entry = new BEDentry( in.readLine() );
+			ArrayList<BEDentry> chrEntries = entries.get( entry.getChrom() );
+			if( chrEntries == null )
+			{
+				chrEntries = new ArrayList<BEDentry>();
+				entries.put( entry.getChrom(), chrEntries );
+			}
+			chrEntries.add( entry );
+			size++;
+		}
+		in.close();
+
+		final Comparator<BEDentry> byStart = new Comparator<BEDentry>()
+		{
+			@Override
+			public int compare( final BEDentry a, final BEDentry b )
+			{
+				return a.getChromStart() < b.getChromStart() ? -1 : ( a.getChromStart() == b.getChromStart() ? 0 : 1 );
+			}
+		};
+
+		//Object sorts are stable
+		for( final String chr : entries.keySet() )
+		{
+			final BEDentry[] sorted = entries.get( chr ).toArray( EMPTY );
+			Arrays.sort( sorted, byStart );
+			chromosomes.put( chr, sorted );
+		}
+	}
+
+	/**
+	 * @param chr
+	 * @return the entries of chr sorted by start, an empty array if there are none
+	 */
+	public BEDentry[] getEntries( final String chr )
+	{
+		final BEDentry[] entries = chromosomes.get( chr );
+		return entries == null ? EMPTY : entries;
+	}
+
+	public boolean contains( final String chr ) { return chromosomes.containsKey( chr ); }
+
+	/**
+	 * @return the number of entries of all chromosomes
+	 */
+	public int size() { return size; }
+}
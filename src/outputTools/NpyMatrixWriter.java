@@ -0,0 +1,110 @@
+package outputTools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a float matrix row by row into a NumPy .npy file (version 1.0, little endian float32, C order), readable with numpy.load.
+ * Rows pass through a fixed size buffer, so the matrix never has to be held in memory. The number of rows is only known
+ * at the end: the header reserves HEADER_SIZE bytes and is written again with the final shape on close.
+ */
+public class NpyMatrixWriter
+{
+	public static final int HEADER_SIZE = 128;
+	protected static final byte[] MAGIC = new byte[] { (byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 1, 0 };
+
+	protected final RandomAccessFile file;
+	protected final FileChannel channel;
+	protected final ByteBuffer buffer;
+
+	protected int columns;
+	protected long rows = 0;
+
+	/**
+	 * @param output
+	 * @param columns length of every row, -1 to take it from the first row
+	 * @throws IOException
+	 */
+	public NpyMatrixWriter( final File output, final int columns ) throws IOException
+	{
+		if( output.exists() )
+			output.delete();
+
+		this.file = new RandomAccessFile( output, "rw" );
+		this.channel = file.getChannel();
+		this.buffer = ByteBuffer.allocateDirect( 1 << 20 ).order( ByteOrder.LITTLE_ENDIAN );
+		this.columns = columns;
+
+		//Placeholder, the shape is written on close
+		buffer.put( header( 0, Math.max( columns, 0 ) ) );
+	}
+
+	/**
+	 * @param rows
+	 * @param columns
+	 * @return the .npy header of a rows x columns float32 matrix, padded to HEADER_SIZE bytes
+	 */
+	protected static byte[] header( final long rows, final int columns )
+	{
+		final StringBuilder dict = new StringBuilder( "{'descr': '<f4', 'fortran_order': False, 'shape': (" + rows + ", " + columns + "), }" );
+		while( dict.length() < HEADER_SIZE - MAGIC.length - 3 )
+			dict.append( ' ' );
+		dict.append( '\n' );
+
+		final ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+		header.put( MAGIC );
+		header.putShort( (short) dict.length() );
+		for( int i = 0; i < dict.length(); i++ )
+			header.put( (byte) dict.charAt( i ) );
+		return header.array();
+	}
+
+	/**
+	 * Append a row of the matrix.
+	 * @param row
+	 * @throws IOException if the row length differs from the length of the other rows
+	 */
+	public void writeRow( final float[] row ) throws IOException
+	{
+		if( columns == -1 )
+			columns = row.length;
+		else if( row.length != columns )
+			throw new IOException( "Row " + rows + " has " + row.length + " instead of " + columns + " columns." );
+
+		for( int i = 0; i < row.length; i++ )
+		{
+			if( !buffer.hasRemaining() )
+				flushBuffer();
+			buffer.putFloat( row[ i ] );
+		}
+		rows++;
+	}
+
+	public long getRows() { return rows; }
+
+	public int getColumns() { return Math.max( columns, 0 ); }
+
+	protected void flushBuffer() throws IOException
+	{
+		buffer.flip();
+		while( buffer.hasRemaining() )
+			channel.write( buffer );
+		buffer.clear();
+	}
+
+	/**
+	 * Write the remaining rows and the final shape, then close the file.
+	 * @throws IOException
+	 */
+	public void close() throws IOException
+	{
+		flushBuffer();
+		channel.write( ByteBuffer.wrap( header( rows, getColumns() ) ), 0 );
+		channel.close();
+		file.close();
+	}
+}
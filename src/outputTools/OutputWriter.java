@@ -0,0 +1,323 @@
+package outputTools;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Buffered text output shared by the tools, used instead of one System.out.println per line.
+ * Strings, ints and floats are formatted directly into a large reused byte buffer, which is written to the stream
+ * when it is full. Nothing is synchronized or flushed per line, so flush() (or close()) has to be called at the end.
+ *
+ * Numbers are formatted exactly as String.valueOf would format them: ints digit by digit, floats between 1.0E-3 and 1.0E7
+ * by searching the shortest decimal that parses back to the same float, all others through Float.toString.
+ */
+public class OutputWriter
+{
+	public static final int BUFFER_SIZE = 1 << 16;
+	protected static final byte[] NEWLINE = System.getProperty( "line.separator" ).getBytes();
+
+	//Largest number of decimals needed for a float from 1.0E-3 on
+	protected static final int MAX_DECIMALS = 12;
+	protected static final double[] POWERS_OF_TEN = new double[ MAX_DECIMALS + 1 ];
+	static
+	{
+		POWERS_OF_TEN[ 0 ] = 1;
+		for( int i = 1; i < POWERS_OF_TEN.length; i++ )
+			POWERS_OF_TEN[ i ] = POWERS_OF_TEN[ i - 1 ] * 10;
+	}
+
+	protected final OutputStream out;
+	protected final boolean closeStream;
+	protected final byte[] buffer = new byte[ BUFFER_SIZE ];
+	protected int position = 0;
+
+	//Bytes passed to the stream so far
+	protected long written = 0;
+
+	//Digits of a number, filled from the end
+	protected final byte[] digits = new byte[ 20 ];
+
+	//Text of the last float printed. Repeated values (e.g. a run written per position) are copied instead of formatted again.
+	protected static final int MAX_FLOAT_LENGTH = 32;
+	protected final byte[] lastFloat = new byte[ MAX_FLOAT_LENGTH ];
+	protected int lastFloatBits, lastFloatLength = 0;
+
+	/**
+	 * Write to STDOUT
+	 */
+	public OutputWriter()
+	{
+		this( System.out );
+	}
+
+	public OutputWriter( final OutputStream out )
+	{
+		this.out = out;
+		this.closeStream = out != System.out;
+	}
+
+	public OutputWriter print( final String s ) throws IOException
+	{
+		final int length = s.length();
+		for( int i = 0; i < length; i++ )
+		{
+			final char c = s.charAt( i );
+			if( c >= 128 )
+				return printEncoded( s );
+		}
+
+		int i = 0;
+		while( i < length )
+		{
+			if( position == BUFFER_SIZE )
+				writeBuffer();
+			final int n = Math.min( length - i, BUFFER_SIZE - position );
+			for( int j = 0; j < n; j++ )
+				buffer[ position++ ] = (byte) s.charAt( i++ );
+		}
+		return this;
+	}
+
+	/**
+	 * Non ASCII Strings are encoded with the default charset, as System.out does.
+	 * @param s
+	 * @return
+	 * @throws IOException
+	 */
+	protected OutputWriter printEncoded( final String s ) throws IOException
+	{
+		final byte[] bytes = s.getBytes();
+		int i = 0;
+		while( i < bytes.length )
+		{
+			if( position == BUFFER_SIZE )
+				writeBuffer();
+			final int n = Math.min( bytes.length - i, BUFFER_SIZE - position );
+			System.arraycopy( bytes, i, buffer, position, n );
+			position += n;
+			i += n;
+		}
+		return this;
+	}
+
+	public OutputWriter print( final Object o ) throws IOException
+	{
+		return print( String.valueOf( o ) );
+	}
+
+	public OutputWriter print( final char c ) throws IOException
+	{
+		if( c >= 128 )
+			return printEncoded( String.valueOf( c ) );
+
+		if( position == BUFFER_SIZE )
+			writeBuffer();
+		buffer[ position++ ] = (byte) c;
+		return this;
+	}
+
+	public OutputWriter tab() throws IOException
+	{
+		return print( '\t' );
+	}
+
+	public OutputWriter print( final int value ) throws IOException
+	{
+		return print( (long) value );
+	}
+
+	public OutputWriter print( final long value ) throws IOException
+	{
+		if( value == Long.MIN_VALUE )
+			return print( Long.toString( value ) );
+
+		ensure( digits.length );
+		long v = value;
+		if( v < 0 )
+		{
+			buffer[ position++ ] = '-';
+			v = -v;
+		}
+
+		int p = digits.length;
+		do
+		{
+			digits[ --p ] = (byte) ( '0' + v % 10 );
+			v /= 10;
+		}
+		while( v != 0 );
+
+		System.arraycopy( digits, p, buffer, position, digits.length - p );
+		position += digits.length - p;
+		return this;
+	}
+
+	public OutputWriter print( final float value ) throws IOException
+	{
+		ensure( MAX_FLOAT_LENGTH );
+		final int bits = Float.floatToRawIntBits( value );
+		if( lastFloatLength > 0 && bits == lastFloatBits )
+		{
+			System.arraycopy( lastFloat, 0, buffer, position, lastFloatLength );
+			position += lastFloatLength;
+			return this;
+		}
+
+		//Formatted within the ensured space, so the text is still in the buffer afterwards
+		final int start = position;
+		final float abs = Math.abs( value );
+		if( value == 0 )
+			print( bits < 0 ? "-0.0" : "0.0" );
+		else if( !( abs >= 1.0E-3f && abs < 1.0E7f && printFixed( value ) ) )
+			print( Float.toString( value ) );
+
+		lastFloatBits = bits;
+		lastFloatLength = position - start;
+		System.arraycopy( buffer, start, lastFloat, 0, lastFloatLength );
+		return this;
+	}
+
+	public OutputWriter print( final double value ) throws IOException
+	{
+		return print( Double.toString( value ) );
+	}
+
+	/**
+	 * Print the shortest decimal with at least one decimal place that parses back to value.
+	 * Among decimals of the same length the closest one is chosen. If d decimals are enough, so are d + 1,
+	 * hence the number of decimals is found by bisection.
+	 * The caller has to ensure MAX_FLOAT_LENGTH bytes of space in the buffer.
+	 * @param value between 1.0E-3 and 1.0E7
+	 * @return false if the decimal can not be determined safely in double arithmetic, value is not printed then
+	 * @throws IOException
+	 */
+	protected boolean printFixed( final float value ) throws IOException
+	{
+		final float abs = Math.abs( value );
+
+		//Smallest number of decimals within ( low, high ] that parses back. A float needs at most 9 significant digits.
+		int high = 8;
+		for( float bound = 1; abs < bound && high < MAX_DECIMALS; bound /= 10 )
+			high++;
+		for( float bound = 10; abs >= bound && high > 1; bound *= 10 )
+			high--;
+		int low = 0;
+		long m = -1;
+		while( high - low > 1 || m == -1 )
+		{
+			final int d = high - low > 1 ? ( low + high ) >>> 1 : high;
+			final long candidate = closestDecimal( abs, d );
+			if( candidate == -2 )
+				return false;
+			else if( candidate == -1 )
+				low = d;
+			else
+			{
+				high = d;
+				m = candidate;
+			}
+			if( candidate == -1 && low == high )
+				return false;
+		}
+
+		final int d = high;
+		if( value < 0 )
+			buffer[ position++ ] = '-';
+		print( m / (long) POWERS_OF_TEN[ d ] );
+		buffer[ position++ ] = '.';
+
+		long fraction = m % (long) POWERS_OF_TEN[ d ];
+		for( int i = d - 1; i >= 0; i-- )
+		{
+			buffer[ position + i ] = (byte) ( '0' + fraction % 10 );
+			fraction /= 10;
+		}
+		position += d;
+		return true;
+	}
+
+	/**
+	 * @param abs
+	 * @param d number of decimals
+	 * @return m, so that m / 10^d is the closest decimal to abs and parses back to abs, -1 if it does not parse back,
+	 * -2 if this is ambiguous in double arithmetic
+	 */
+	protected static long closestDecimal( final float abs, final int d )
+	{
+		//Exact in double: 24 bit mantissa times 5^d (at most 28 bits). Below 1.0E10, as at most 9 significant digits are tried
+		final double scaled = abs * POWERS_OF_TEN[ d ];
+		final long floor = (long) scaled;
+		if( scaled - floor == 0.5 )
+			return -2;
+
+		final long m = scaled - floor < 0.5 ? floor : floor + 1;
+		final double q = m / POWERS_OF_TEN[ d ];
+
+		//The division is rounded a second time to float, which is only ambiguous exactly between two floats,
+		//i.e. if the 29 bits of the double mantissa not kept by the float are 1000...0
+		if( ( Double.doubleToRawLongBits( q ) & 0x1fffffffL ) == 0x10000000L )
+			return -2;
+
+		return (float) q == abs ? m : -1;
+	}
+
+	public OutputWriter println() throws IOException
+	{
+		ensure( NEWLINE.length );
+		for( int i = 0; i < NEWLINE.length; i++ )
+			buffer[ position++ ] = NEWLINE[ i ];
+		return this;
+	}
+
+	public OutputWriter println( final String s ) throws IOException
+	{
+		return print( s ).println();
+	}
+
+	public OutputWriter println( final Object o ) throws IOException
+	{
+		return print( o ).println();
+	}
+
+	/**
+	 * Make room for n bytes
+	 */
+	protected void ensure( final int n ) throws IOException
+	{
+		if( BUFFER_SIZE - position < n )
+			writeBuffer();
+	}
+
+	protected void writeBuffer() throws IOException
+	{
+		out.write( buffer, 0, position );
+		written += position;
+		position = 0;
+	}
+
+	/**
+	 * @return the number of bytes printed so far, i.e. the offset of the next byte in the output
+	 */
+	public long getPosition() { return written + position; }
+
+	/**
+	 * Write the buffer and flush the stream.
+	 * @throws IOException
+	 */
+	public void flush() throws IOException
+	{
+		writeBuffer();
+		out.flush();
+	}
+
+	/**
+	 * Flush the buffer. Streams other than STDOUT are closed.
+	 * @throws IOException
+	 */
+	public void close() throws IOException
+	{
+		flush();
+		if( closeStream )
+			out.close();
+	}
+}